@@ -0,0 +1,77 @@
+package be.sonck.xml;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Drains an iterator of batches, such as a {@link BlockingQueueXmlHandlerIterator} fed by a
+ * {@link BatchingXmlHandlerListener}, one element at a time.  Splitting hands off a complete batch, so
+ * parallel consumers only touch the shared iterator once per batch.
+ */
+public class BatchSpliterator<T> implements Spliterator<T> {
+
+	private final Iterator<? extends List<T>> batches;
+	private Spliterator<T> current = Spliterators.emptySpliterator();
+
+	public BatchSpliterator(Iterator<? extends List<T>> batches) {
+		this.batches = batches;
+	}
+
+	/**
+	 * @return an iterator over all elements of all batches
+	 */
+	public static <T> Iterator<T> iterator(Iterator<? extends List<T>> batches) {
+		return Spliterators.iterator(new BatchSpliterator<T>(batches));
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (!current.tryAdvance(action)) {
+			if (!batches.hasNext()) return false;
+
+			current = spliterator(batches.next());
+		}
+
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		current.forEachRemaining(action);
+
+		while (batches.hasNext()) {
+			batches.next().forEach(action);
+		}
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		// The rest of the current batch comes first, so it is handed off before a new batch is taken.
+		if (current.estimateSize() > 0) {
+			Spliterator<T> prefix = current;
+			current = Spliterators.emptySpliterator();
+			return prefix;
+		}
+
+		if (!batches.hasNext()) return null;
+
+		return spliterator(batches.next());
+	}
+
+	private static <T> Spliterator<T> spliterator(List<T> batch) {
+		return Spliterators.spliterator(batch, ORDERED);
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED;
+	}
+}
@@ -0,0 +1,101 @@
+package be.sonck.xml;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link XmlBatchValidator} run: one result per document, in the order in which the
+ * documents were given, plus aggregate statistics.
+ *
+ * @author Johan Sonck
+ */
+public class BatchValidationResult<K> {
+
+    /**
+     * The outcome for a single document.  Either report or failure is set; failure means the document
+     * could not be read.
+     */
+    @Value
+    public static class DocumentResult<K> {
+        private K document;
+        private ValidationReport report;
+        private Exception failure;
+        private long nanos;
+
+        public boolean isValid() {
+            return report != null && report.isValid();
+        }
+    }
+
+    private final List<DocumentResult<K>> results;
+    private final long elapsedNanos;
+
+    BatchValidationResult(List<DocumentResult<K>> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<DocumentResult<K>> getResults() {
+        return results;
+    }
+
+    public int getDocumentCount() {
+        return results.size();
+    }
+
+    public int getValidCount() {
+        int count = 0;
+        for (DocumentResult<K> result : results) {
+            if (result.isValid()) count++;
+        }
+
+        return count;
+    }
+
+    public int getInvalidCount() {
+        int count = 0;
+        for (DocumentResult<K> result : results) {
+            if (result.getReport() != null && !result.getReport().isValid()) count++;
+        }
+
+        return count;
+    }
+
+    public int getFailedCount() {
+        return getDocumentCount() - getValidCount() - getInvalidCount();
+    }
+
+    /**
+     * @return the wall clock time of the whole batch
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the sum of the time spent on each document, which exceeds the elapsed time when documents
+     * were validated in parallel
+     */
+    public long getValidationNanos() {
+        long nanos = 0;
+        for (DocumentResult<K> result : results) {
+            nanos += result.getNanos();
+        }
+
+        return nanos;
+    }
+
+    public double getDocumentsPerSecond() {
+        return elapsedNanos == 0 ? 0 : results.size() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d documents (%d valid, %d invalid, %d failed) in %d ms, %.1f documents/s",
+                getDocumentCount(), getValidCount(), getInvalidCount(), getFailedCount(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getDocumentsPerSecond());
+    }
+}
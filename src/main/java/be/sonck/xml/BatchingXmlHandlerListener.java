@@ -0,0 +1,81 @@
+package be.sonck.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups the elements of an {@link XmlElementHandler} into batches before passing them on to another
+ * listener.  A batch is delivered when it holds batchSize elements, when the first element in it is
+ * older than the time budget, or at the end of the document.  The age is checked when a new element
+ * arrives and, as an {@link XmlProgressListener}, on every end tag and chunk of text the handler parses,
+ * so a batch does not wait for the next element during a long region without requested elements.
+ *
+ * Combined with a {@link BlockingQueueXmlHandlerIterator} of lists this divides the number of queue
+ * hand-offs by the batch size; {@link BatchSpliterator} turns the batches back into single elements.
+ */
+public class BatchingXmlHandlerListener<T> implements XmlHandlerListener<T>, XmlProgressListener {
+
+	private final XmlHandlerListener<List<T>> delegate;
+	private final int batchSize;
+	private final long maxDelayNanos;
+	private List<T> batch;
+	private long batchStartNanos;
+
+	public BatchingXmlHandlerListener(XmlHandlerListener<List<T>> delegate, int batchSize) {
+		this(delegate, batchSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	public BatchingXmlHandlerListener(XmlHandlerListener<List<T>> delegate, int batchSize, long maxDelay, TimeUnit unit) {
+		if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1 (" + batchSize + ")");
+
+		this.delegate = delegate;
+		this.batchSize = batchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+	}
+
+	@Override
+	public void start() {
+		delegate.start();
+	}
+
+	@Override
+	public void end() {
+		flush();
+		delegate.end();
+	}
+
+	@Override
+	public void newElement(T element) {
+		if (batch == null) {
+			batch = new ArrayList<T>(batchSize);
+			batchStartNanos = System.nanoTime();
+		}
+
+		batch.add(element);
+
+		if (batch.size() >= batchSize || isOverdue()) {
+			flush();
+		}
+	}
+
+	@Override
+	public void progress() {
+		if (batch != null && isOverdue()) flush();
+	}
+
+	/**
+	 * Delivers the elements collected so far, if any, as a batch.
+	 */
+	public void flush() {
+		if (batch == null) return;
+
+		List<T> fullBatch = batch;
+		batch = null;
+		delegate.newElement(fullBatch);
+	}
+
+	private boolean isOverdue() {
+		return maxDelayNanos != Long.MAX_VALUE && System.nanoTime() - batchStartNanos >= maxDelayNanos;
+	}
+}
@@ -1,65 +1,96 @@
 package be.sonck.xml;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 
+/**
+ * Hands the elements produced on a parser thread over to a consuming thread. The end of the document
+ * and parser failures are passed through the same queue as the elements, so a waiting consumer wakes
+ * up as soon as any of them arrives.
+ */
 public class BlockingQueueXmlHandlerIterator<T> implements XmlHandlerListener<T>, Iterator<T> {
 
-	private static final int SLEEP_TIME = 100;
-	
-	private boolean isParsingDone;
-	private BlockingQueue<T> queue;
+	private static final Object END_OF_DOCUMENT = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private volatile boolean isCancelled;
+	private Object nextEntry;
 	private T lastTakenEntry;
-	
-	
+
+
 	public BlockingQueueXmlHandlerIterator(int capacity) {
-		queue = new ArrayBlockingQueue<T>(capacity);
+		queue = new ArrayBlockingQueue<Object>(capacity);
 	}
-	
+
 
 	@Override
 	public void start() {
 	}
-	
+
 	@Override
 	public final void end() {
-		isParsingDone = true;
+		if (isCancelled) return;
+
+		put(END_OF_DOCUMENT);
 	}
 
 	@Override
 	public final void newElement(T element) {
-		try {
-			queue.put(element);
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		if (isCancelled) throw new CancellationException("parsing was cancelled");
+
+		put(element);
+	}
+
+	/**
+	 * Passes an exception that aborted the parsing on to the consumer.  The next call to {@link #hasNext()}
+	 * or {@link #next()} will throw a RuntimeException with the given cause.
+	 * @param cause the exception thrown by the parser
+	 */
+	public final void fail(Throwable cause) {
+		if (isCancelled) return;
+
+		put(new Failure(cause));
+	}
+
+	/**
+	 * Stops the hand-off.  A waiting consumer is woken up and sees the end of the iteration, and the next
+	 * element produced by the parser results in a {@link CancellationException} on the parser thread.
+	 */
+	public final void cancel() {
+		isCancelled = true;
+		queue.clear();
+		queue.offer(END_OF_DOCUMENT);
+	}
+
+	public final boolean isCancelled() {
+		return isCancelled;
 	}
 
 	@Override
 	public final boolean hasNext() {
-		T peekedObject = queue.peek();
-		while (peekedObject == null && !isParsingDone) {
-			try {
-				Thread.sleep(SLEEP_TIME);
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			}
-			
-			peekedObject = queue.peek();
+		if (nextEntry == null) {
+			nextEntry = take();
+		}
+
+		if (nextEntry instanceof Failure) {
+			throw new RuntimeException(((Failure) nextEntry).cause);
 		}
-		
-		return (peekedObject != null);
+
+		return nextEntry != END_OF_DOCUMENT && !isCancelled;
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public final T next() {
-		try {
-			lastTakenEntry = queue.take();
-			return lastTakenEntry;
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+		if (!hasNext()) throw new NoSuchElementException();
+
+		lastTakenEntry = (T) nextEntry;
+		nextEntry = null;
+
+		return lastTakenEntry;
 	}
 
 	@Override
@@ -68,4 +99,30 @@ public class BlockingQueueXmlHandlerIterator<T> implements XmlHandlerListener<T>
 			queue.remove(lastTakenEntry);
 		}
 	}
+
+	private void put(Object entry) {
+		try {
+			queue.put(entry);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Object take() {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static final class Failure {
+		private final Throwable cause;
+
+		private Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
 }
@@ -0,0 +1,106 @@
+package be.sonck.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through a {@link FileChannel} by mapping it into memory one region at a time, so that a
+ * multi-gigabyte file is read without copying it through intermediate heap buffers.
+ *
+ * @author Johan Sonck
+ */
+public class MappedFileInputStream extends InputStream {
+
+	public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int regionSize;
+	private long regionStart;
+	private MappedByteBuffer region;
+
+	public MappedFileInputStream(Path path) throws IOException {
+		this(path, DEFAULT_REGION_SIZE);
+	}
+
+	public MappedFileInputStream(Path path, int regionSize) throws IOException {
+		this(path, 0, Long.MAX_VALUE, regionSize);
+	}
+
+	/**
+	 * Reads only the bytes from offset start up to, but not including, offset end.
+	 */
+	public MappedFileInputStream(Path path, long start, long end) throws IOException {
+		this(path, start, end, DEFAULT_REGION_SIZE);
+	}
+
+	public MappedFileInputStream(Path path, long start, long end, int regionSize) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.size = Math.min(end, channel.size());
+		this.regionStart = Math.min(start, size);
+		this.regionSize = regionSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureRegion()) return -1;
+
+		return region.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		if (!ensureRegion()) return -1;
+
+		int count = Math.min(length, region.remaining());
+		region.get(buffer, offset, count);
+
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long position = Math.min(size, position() + Math.max(0, n));
+		long skipped = position - position();
+
+		regionStart = position;
+		region = null;
+
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, size - position());
+	}
+
+	@Override
+	public void close() throws IOException {
+		region = null;
+		channel.close();
+	}
+
+	/**
+	 * @return the offset in the file of the next byte to read
+	 */
+	public long position() {
+		return region == null ? regionStart : regionStart + region.position();
+	}
+
+	private boolean ensureRegion() throws IOException {
+		if (region != null && region.hasRemaining()) return true;
+
+		if (region != null) regionStart += region.limit();
+		if (regionStart >= size) return false;
+
+		long length = Math.min(regionSize, size - regionStart);
+		region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+
+		return true;
+	}
+}
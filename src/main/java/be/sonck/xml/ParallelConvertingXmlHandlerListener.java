@@ -0,0 +1,132 @@
+package be.sonck.xml;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Moves the conversion of parsed elements off the parser thread.  Register it as the listener of an
+ * {@link XmlElementHandler} that uses {@link XmlElementToObjectConverter#identity()}: the parser thread then
+ * only builds the {@link XmlElement} subtrees, while the given executor runs the real converter.  Any
+ * executor works, including a virtual thread per task executor.
+ *
+ * The converted objects are passed to the target listener on the parser thread, so the target never
+ * sees concurrent calls.  In ordered mode they arrive in document order, otherwise in order of
+ * completion.  At most maxInFlight conversions are pending at any time; when that limit is reached the
+ * parser waits for a result.
+ */
+public class ParallelConvertingXmlHandlerListener<T> implements XmlHandlerListener<XmlElement> {
+
+	private final XmlHandlerListener<T> listener;
+	private final XmlElementToObjectConverter<T> converter;
+	private final Executor executor;
+	private final int maxInFlight;
+	private final boolean ordered;
+
+	private final Queue<Future<T>> pending = new ArrayDeque<Future<T>>();
+	private final CompletionService<T> completionService;
+	private int inFlight;
+
+	public ParallelConvertingXmlHandlerListener(XmlHandlerListener<T> listener, XmlElementToObjectConverter<T> converter,
+			Executor executor, int maxInFlight) {
+
+		this(listener, converter, executor, maxInFlight, true);
+	}
+
+	public ParallelConvertingXmlHandlerListener(XmlHandlerListener<T> listener, XmlElementToObjectConverter<T> converter,
+			Executor executor, int maxInFlight, boolean ordered) {
+
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1 (" + maxInFlight + ")");
+
+		this.listener = listener;
+		this.converter = converter;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.ordered = ordered;
+		this.completionService = ordered ? null : new ExecutorCompletionService<T>(executor);
+	}
+
+	@Override
+	public void start() {
+		listener.start();
+	}
+
+	@Override
+	public void end() {
+		while (inFlight > 0) {
+			deliver(waitForResult());
+		}
+
+		listener.end();
+	}
+
+	@Override
+	public void newElement(final XmlElement element) {
+		submit(element);
+
+		deliverCompleted();
+
+		if (inFlight >= maxInFlight) {
+			deliver(waitForResult());
+		}
+	}
+
+	private void submit(final XmlElement element) {
+		if (ordered) {
+			FutureTask<T> task = new FutureTask<T>(() -> converter.convert(element));
+			// Only queue a task the executor accepted, end() would wait forever for a rejected one.
+			executor.execute(task);
+			pending.add(task);
+		} else {
+			completionService.submit(() -> converter.convert(element));
+		}
+
+		inFlight++;
+	}
+
+	private void deliverCompleted() {
+		Future<T> future = nextCompleted();
+		while (future != null) {
+			deliver(future);
+			future = nextCompleted();
+		}
+	}
+
+	private Future<T> nextCompleted() {
+		if (!ordered) return completionService.poll();
+
+		Future<T> head = pending.peek();
+		return head != null && head.isDone() ? pending.poll() : null;
+	}
+
+	private Future<T> waitForResult() {
+		if (ordered) return pending.poll();
+
+		try {
+			return completionService.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void deliver(Future<T> future) {
+		inFlight--;
+
+		try {
+			listener.newElement(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+}
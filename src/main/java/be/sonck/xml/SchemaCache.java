@@ -0,0 +1,216 @@
+package be.sonck.xml;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps compiled {@link Schema} objects so that an XSD is only compiled once, together with a pool of
+ * {@link Validator} objects per schema.  Schemas are identified by the URL they were loaded from, by an
+ * explicit key, or by a hash of their content.  When more than maxSize schemas are cached, the least
+ * recently used one is evicted.  Each pool keeps at most maxPoolSize idle validators, validators released
+ * beyond that are dropped.  Thread safe; a schema is compiled at most once even when several threads
+ * ask for it at the same time.
+ *
+ * @author Johan Sonck
+ */
+public class SchemaCache {
+
+	public static final int DEFAULT_MAX_SIZE = 32;
+	public static final int DEFAULT_MAX_POOL_SIZE = 16;
+
+	private final Map<String, FutureTask<Entry>> entries;
+	private final int maxPoolSize;
+
+	public SchemaCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public SchemaCache(int maxSize) {
+		this(maxSize, DEFAULT_MAX_POOL_SIZE);
+	}
+
+	public SchemaCache(int maxSize, int maxPoolSize) {
+		if (maxPoolSize < 1) throw new IllegalArgumentException("maxPoolSize must be at least 1 (" + maxPoolSize + ")");
+
+		this.maxPoolSize = maxPoolSize;
+		this.entries = new LeastRecentlyUsedMap<FutureTask<Entry>>(maxSize);
+	}
+
+	/**
+	 * @return the schema loaded from the given URL; relative includes and imports are resolved against it
+	 */
+	public Entry get(final URL xsdResource) {
+		return get("resource:" + xsdResource.toExternalForm(), () -> new StreamSource(xsdResource.toExternalForm()));
+	}
+
+	/**
+	 * @return the schema cached under the given key; the reader is only consumed when it is not cached yet
+	 */
+	public Entry get(String key, final Reader xsdReader) {
+		return get("key:" + key, () -> new StreamSource(xsdReader));
+	}
+
+	/**
+	 * @return the schema with the given content, identified by its SHA-256 hash.  The content is hashed on
+	 * every call, also when the schema is cached; use {@link #get(URL)} or {@link #get(String, Reader)} to
+	 * look up a schema that is used over and over again.
+	 */
+	public Entry get(final String xsdContent) {
+		return get("content:" + sha256(xsdContent), () -> new StreamSource(new StringReader(xsdContent)));
+	}
+
+	/**
+	 * Reads the whole reader to identify the schema by its content, on every call.  Prefer {@link #get(URL)}
+	 * or {@link #get(String, Reader)} for a schema that is used over and over again.
+	 */
+	public Entry get(Reader xsdReader) {
+		return get(readFully(xsdReader));
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private Entry get(String key, final Callable<Source> source) {
+		FutureTask<Entry> task;
+		boolean isNew = false;
+
+		synchronized (entries) {
+			task = entries.get(key);
+			if (task == null) {
+				task = new FutureTask<Entry>(() -> new Entry(compile(source.call()), maxPoolSize));
+				entries.put(key, task);
+				isNew = true;
+			}
+		}
+
+		// Compile outside of the lock, so that other schemas stay available in the meantime.
+		if (isNew) task.run();
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			synchronized (entries) {
+				entries.remove(key, task);
+			}
+
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private static Schema compile(Source source) throws Exception {
+		// SchemaFactory is not thread safe, so every compilation gets its own.
+		SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+		return factory.newSchema(source);
+	}
+
+	private static String readFully(Reader reader) {
+		try {
+			StringBuilder builder = new StringBuilder();
+			char[] buffer = new char[8192];
+			int count;
+			while ((count = reader.read(buffer)) >= 0) {
+				builder.append(buffer, 0, count);
+			}
+
+			return builder.toString();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String sha256(String content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder builder = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static final class LeastRecentlyUsedMap<V> extends LinkedHashMap<String, V> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		private LeastRecentlyUsedMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	/**
+	 * A compiled schema with its pool of validators.
+	 */
+	public static final class Entry {
+		private final Schema schema;
+		private final Queue<Validator> validators;
+
+		private Entry(Schema schema, int maxPoolSize) {
+			this.schema = schema;
+			this.validators = new ArrayBlockingQueue<Validator>(maxPoolSize);
+		}
+
+		public Schema getSchema() {
+			return schema;
+		}
+
+		/**
+		 * @return an idle validator for this schema; hand it back with {@link #release(Validator)}
+		 */
+		public Validator acquire() {
+			Validator validator = validators.poll();
+			return validator != null ? validator : schema.newValidator();
+		}
+
+		/**
+		 * Hands the validator back to the pool, or drops it when the pool is full.
+		 */
+		public void release(Validator validator) {
+			validator.reset();
+			validators.offer(validator);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package be.sonck.xml;
+
+import lombok.Value;
+import org.xml.sax.SAXParseException;
+
+/**
+ * One problem found while validating a document.
+ *
+ * @author Johan Sonck
+ */
+@Value
+public class ValidationError {
+
+    private int lineNumber;
+    private int columnNumber;
+    private String message;
+    private boolean fatal;
+
+    static ValidationError of(SAXParseException exception, boolean fatal) {
+        return new ValidationError(exception.getLineNumber(), exception.getColumnNumber(), exception.getMessage(), fatal);
+    }
+}
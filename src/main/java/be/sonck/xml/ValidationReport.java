@@ -0,0 +1,26 @@
+package be.sonck.xml;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The outcome of {@link XmlValidator#validate(java.io.Reader, java.io.Reader)}.
+ *
+ * @author Johan Sonck
+ */
+@Value
+public class ValidationReport {
+
+    private List<ValidationError> errors;
+
+    /**
+     * True when validation stopped because the maximum number of errors was reached or because the document
+     * is not well formed, so the document may contain more errors than reported.
+     */
+    private boolean aborted;
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+}
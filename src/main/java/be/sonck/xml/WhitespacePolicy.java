@@ -0,0 +1,111 @@
+package be.sonck.xml;
+
+import be.sonck.xml.value.LargeTextValue;
+
+import java.io.IOException;
+
+/**
+ * Decides what happens with the whitespace in the text of a parsed element.  Text that consists of
+ * whitespace only never becomes a value, whatever the policy.
+ *
+ * @author Johan Sonck
+ */
+public enum WhitespacePolicy {
+
+	/**
+	 * Removes leading and trailing whitespace.  This is what {@link XmlElementHandler} has always done.
+	 */
+	TRIM {
+		@Override
+		String apply(CharSequence text) {
+			int start = 0;
+			int end = text.length();
+			while (start < end && text.charAt(start) <= ' ') start++;
+			while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+			return start == end ? null : text.subSequence(start, end).toString();
+		}
+	},
+
+	/**
+	 * Keeps the text exactly as it was parsed.
+	 */
+	PRESERVE {
+		@Override
+		String apply(CharSequence text) {
+			return TRIM.apply(text) == null ? null : text.toString();
+		}
+	},
+
+	/**
+	 * Removes leading and trailing whitespace and replaces every other run of whitespace by a single space.
+	 */
+	COLLAPSE {
+		@Override
+		String apply(CharSequence text) {
+			StringBuilder builder = new StringBuilder(text.length());
+			boolean isPendingSpace = false;
+
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c <= ' ') {
+					isPendingSpace = builder.length() > 0;
+					continue;
+				}
+
+				if (isPendingSpace) builder.append(' ');
+				isPendingSpace = false;
+				builder.append(c);
+			}
+
+			return builder.length() == 0 ? null : builder.toString();
+		}
+	};
+
+	/**
+	 * @param text the complete text of an element
+	 * @return the value of the element, or null when it has none
+	 */
+	abstract String apply(CharSequence text);
+
+	/**
+	 * Applies the policy to the next chunk of a text that is too large to be collected first.  Whitespace
+	 * that may still turn out to be trailing is kept in pending until non-whitespace follows.
+	 * @param pending the whitespace seen since the last non-whitespace character
+	 */
+	void append(CharSequence chunk, StringBuilder pending, LargeTextValue out) throws IOException {
+		int runStart = 0;
+		int length = chunk.length();
+		for (int i = 0; i < length; i++) {
+			char c = chunk.charAt(i);
+			if (c > ' ') continue;
+
+			if (runStart < i) {
+				appendPending(pending, out);
+				out.append(chunk, runStart, i);
+			}
+			if (this != COLLAPSE || pending.length() == 0) pending.append(c);
+			runStart = i + 1;
+		}
+
+		if (runStart < length) {
+			appendPending(pending, out);
+			out.append(chunk, runStart, length);
+		}
+	}
+
+	/**
+	 * Completes a text that was passed to {@link #append(CharSequence, StringBuilder, LargeTextValue)}.
+	 */
+	void end(StringBuilder pending, LargeTextValue out) throws IOException {
+		if (this == PRESERVE && out.length() > 0) out.append(pending);
+		pending.setLength(0);
+	}
+
+	private void appendPending(StringBuilder pending, LargeTextValue out) throws IOException {
+		if (pending.length() == 0) return;
+
+		if (this == PRESERVE || out.length() > 0) out.append(this == COLLAPSE ? " " : pending);
+		pending.setLength(0);
+	}
+}
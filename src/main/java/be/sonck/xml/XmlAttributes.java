@@ -0,0 +1,105 @@
+package be.sonck.xml;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The attributes of an {@link XmlElement}, kept as name/value pairs in a single array.  Elements rarely
+ * have more than a handful of attributes, so a linear scan beats hashing and the footprint is a fraction of
+ * a HashMap.  The attributes are kept in the order in which they were first set.
+ *
+ * @author Johan Sonck
+ */
+class XmlAttributes extends AbstractMap<String, String> {
+
+    private String[] namesAndValues = new String[4];
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return indexOf(name) >= 0;
+    }
+
+    @Override
+    public String get(Object name) {
+        int index = indexOf(name);
+        return index < 0 ? null : namesAndValues[index + 1];
+    }
+
+    @Override
+    public String put(String name, String value) {
+        int index = indexOf(name);
+        if (index >= 0) {
+            String previous = namesAndValues[index + 1];
+            namesAndValues[index + 1] = value;
+            return previous;
+        }
+
+        if (size * 2 == namesAndValues.length) {
+            namesAndValues = Arrays.copyOf(namesAndValues, namesAndValues.length * 2);
+        }
+
+        namesAndValues[size * 2] = name;
+        namesAndValues[size * 2 + 1] = value;
+        size++;
+
+        return null;
+    }
+
+    String nameAt(int index) {
+        return namesAndValues[index * 2];
+    }
+
+    String valueAt(int index) {
+        return namesAndValues[index * 2 + 1];
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+
+                        Entry<String, String> entry = new SimpleImmutableEntry<String, String>(nameAt(index), valueAt(index));
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(Object name) {
+        for (int i = 0; i < size * 2; i += 2) {
+            if (Objects.equals(namesAndValues[i], name)) return i;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package be.sonck.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Validates many documents against one schema concurrently.  The schema is compiled once, before the first
+ * document is submitted, and every worker thread borrows its own validator from the {@link SchemaCache}
+ * pool.  Any executor can be used, including a virtual thread per task executor.
+ *
+ * @author Johan Sonck
+ */
+public class XmlBatchValidator {
+
+	/**
+	 * Opens a document of the batch for reading.
+	 */
+	public interface ReaderFactory<K> {
+		Reader open(K document) throws IOException;
+	}
+
+	private final XmlValidator validator;
+	private final Executor executor;
+	private final int maxInFlight;
+
+	public XmlBatchValidator(XmlValidator validator, Executor executor) {
+		this(validator, executor, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param validator   validates each document, with its fail fast and maximum error settings
+	 * @param executor    runs the validations
+	 * @param maxInFlight the maximum number of documents submitted to the executor at the same time
+	 */
+	public XmlBatchValidator(XmlValidator validator, Executor executor, int maxInFlight) {
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1 (" + maxInFlight + ")");
+
+		this.validator = validator;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	public <K> BatchValidationResult<K> validate(Stream<K> documents, ReaderFactory<K> readerFactory, URL xsdResource) {
+		return validate(documents, readerFactory, validator.getSchemaCache().get(xsdResource));
+	}
+
+	public <K> BatchValidationResult<K> validate(Stream<K> documents, ReaderFactory<K> readerFactory, String schemaKey,
+			Reader xsdReader) {
+
+		return validate(documents, readerFactory, validator.getSchemaCache().get(schemaKey, xsdReader));
+	}
+
+	public <K> BatchValidationResult<K> validate(Iterable<K> documents, ReaderFactory<K> readerFactory, URL xsdResource) {
+		List<K> list = new ArrayList<K>();
+		documents.forEach(list::add);
+
+		return validate(list.stream(), readerFactory, xsdResource);
+	}
+
+	private <K> BatchValidationResult<K> validate(Stream<K> documents, final ReaderFactory<K> readerFactory,
+			final SchemaCache.Entry schema) {
+
+		long start = System.nanoTime();
+		final Semaphore inFlight = new Semaphore(maxInFlight);
+		final List<CompletableFuture<BatchValidationResult.DocumentResult<K>>> futures =
+				new ArrayList<CompletableFuture<BatchValidationResult.DocumentResult<K>>>();
+
+		documents.forEachOrdered(document -> {
+			inFlight.acquireUninterruptibly();
+
+			CompletableFuture<BatchValidationResult.DocumentResult<K>> future;
+			try {
+				future = CompletableFuture.supplyAsync(() -> validate(document, readerFactory, schema), executor);
+			} catch (RejectedExecutionException e) {
+				// The task never runs, so its permit is handed back here and the rejection is its result.
+				inFlight.release();
+				futures.add(CompletableFuture.completedFuture(
+						new BatchValidationResult.DocumentResult<K>(document, null, e, 0)));
+				return;
+			}
+
+			future.whenComplete((result, failure) -> inFlight.release());
+			futures.add(future);
+		});
+
+		List<BatchValidationResult.DocumentResult<K>> results =
+				new ArrayList<BatchValidationResult.DocumentResult<K>>(futures.size());
+		for (CompletableFuture<BatchValidationResult.DocumentResult<K>> future : futures) {
+			results.add(future.join());
+		}
+
+		return new BatchValidationResult<K>(results, System.nanoTime() - start);
+	}
+
+	private <K> BatchValidationResult.DocumentResult<K> validate(K document, ReaderFactory<K> readerFactory,
+			SchemaCache.Entry schema) {
+
+		long start = System.nanoTime();
+		try (Reader reader = readerFactory.open(document)) {
+			ValidationReport report = validator.validate(reader, schema);
+			return new BatchValidationResult.DocumentResult<K>(document, report, null, System.nanoTime() - start);
+
+		} catch (Exception e) {
+			return new BatchValidationResult.DocumentResult<K>(document, null, e, System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package be.sonck.xml;
+
+import lombok.Value;
+
+/**
+ * The position in a file up to which its top elements have been delivered.  The byteOffset is the start
+ * of a top element from which parsing can restart; the elementsAfterOffset elements starting there have
+ * already been delivered as well.  A checkpoint is only meaningful for the file it was taken from.
+ *
+ * @author Johan Sonck
+ */
+@Value
+public class XmlCheckpoint {
+
+    /**
+     * The checkpoint of a parse that has not delivered anything yet.
+     */
+    public static final XmlCheckpoint START = new XmlCheckpoint(0, 0, 0);
+
+    private long byteOffset;
+    private long elementCount;
+    private long elementsAfterOffset;
+}
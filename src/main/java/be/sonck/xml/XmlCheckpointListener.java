@@ -0,0 +1,10 @@
+package be.sonck.xml;
+
+/**
+ * Receives a new {@link XmlCheckpoint} after every top element the listener has accepted, typically to
+ * store it so a failed parse can be resumed.
+ */
+public interface XmlCheckpointListener {
+
+	public void checkpoint(XmlCheckpoint checkpoint);
+}
@@ -1,12 +1,19 @@
 package be.sonck.xml;
 
+import be.sonck.xml.value.CharSequenceValue;
+import be.sonck.xml.value.LargeTextValue;
 import be.sonck.xml.value.StringValue;
+import be.sonck.xml.value.XmlEscaper;
 import be.sonck.xml.value.XmlValue;
-import org.apache.commons.collections.CollectionUtils;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * This class facilitates the construction of a nested XML document.
@@ -14,14 +21,31 @@ import java.util.*;
  * @author Johan Sonck
  */
 public class XmlElement {
+    private static final List<XmlElement> NO_CHILDREN = Collections.emptyList();
+
+    // Below this number of children a lookup by tag scans the children instead of building an index.
+    private static final int MIN_INDEXED_CHILDREN = 8;
+
     private String tag;
+    // A plain text value is kept as a String; it is only wrapped in a StringValue when asked for, and that
+    // wrapper is kept in xmlValue next to the text.
+    private String text;
     private XmlValue xmlValue;
-    private Map<String, String> attributes = new HashMap<>();
-    private List<XmlElement> children = new ArrayList<>();
+    private XmlAttributes attributes;
+    private List<XmlElement> children = NO_CHILDREN;
     private XmlElement parent;
+    // The children by tag, built by the first lookup by tag among many children.
+    private Map<String, List<XmlElement>> childrenByTag;
+    // The hash of the subtree, 0 when it has not been computed since the last change to the subtree.
+    private int hash;
 
     public static final String HEADER = "<?xml version='1.0' encoding='utf-8'?>";
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    // Indentation is written in slices of this String instead of one space at a time.
+    private static final String SPACES = padLeft("", " ", 128);
+
     public XmlElement(String tag) {
         this(null, tag, (XmlValue) null);
     }
@@ -39,7 +63,8 @@ public class XmlElement {
     }
 
     public XmlElement(XmlElement parent, String tag, String value) {
-        this(parent, tag, value == null ? null : new StringValue(value));
+        this(parent, tag, (XmlValue) null);
+        this.text = value;
     }
 
     public XmlElement(XmlElement parent, String tag, XmlValue xmlValue) {
@@ -52,11 +77,22 @@ public class XmlElement {
     }
 
     public Map<String, String> getAttributes() {
+        if (attributes == null) return Collections.emptyMap();
+
         return Collections.unmodifiableMap(this.attributes);
     }
 
     public String getAttribute(String name) {
-        return getAttributes().get(name);
+        return attributes == null ? null : attributes.get(name);
+    }
+
+    /**
+     * @param parser converts the attribute value, for instance Integer::valueOf
+     * @return the converted value of the attribute, or null when the element does not have it
+     */
+    public <T> T getAttribute(String name, Function<String, ? extends T> parser) {
+        String value = getAttribute(name);
+        return value == null ? null : parser.apply(value);
     }
 
     /**
@@ -67,15 +103,66 @@ public class XmlElement {
      * @return A reference to self.
      */
     public XmlElement setAttribute(String name, String value) {
+        if (attributes == null) attributes = new XmlAttributes();
         attributes.put(name, value);
+        invalidateHash();
 
         return this;
     }
 
     public List<XmlElement> getChildren() {
+        if (children == NO_CHILDREN) return NO_CHILDREN;
+
         return Collections.unmodifiableList(this.children);
     }
 
+    /**
+     * @return the first child with the given tag, or null when there is none
+     */
+    public XmlElement getChild(String tag) {
+        List<XmlElement> children = getChildren(tag);
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    /**
+     * Finds the children with the given tag.  Looking up several tags among many children builds an index
+     * of the children by tag once, so reading all fields of a record takes time linear in its size.
+     *
+     * @return the children with the given tag in document order
+     */
+    public List<XmlElement> getChildren(String tag) {
+        if (children.size() < MIN_INDEXED_CHILDREN) {
+            List<XmlElement> result = NO_CHILDREN;
+            for (XmlElement child : children) {
+                if (!Objects.equals(tag, child.tag)) continue;
+
+                if (result == NO_CHILDREN) result = new ArrayList<>(1);
+                result.add(child);
+            }
+
+            return result == NO_CHILDREN ? NO_CHILDREN : Collections.unmodifiableList(result);
+        }
+
+        if (childrenByTag == null) {
+            childrenByTag = new HashMap<>();
+            for (XmlElement child : children) {
+                index(child);
+            }
+        }
+
+        List<XmlElement> result = childrenByTag.get(tag);
+        return result == null ? NO_CHILDREN : Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the {@link #getText() text} of the first child with the given tag, or null when there is no
+     * such child
+     */
+    public String getChildText(String tag) {
+        XmlElement child = getChild(tag);
+        return child == null ? null : child.getText();
+    }
+
     public XmlElement getParent() {
         return this.parent;
     }
@@ -85,15 +172,36 @@ public class XmlElement {
     }
 
     public XmlValue getValue() {
+        if (text != null && xmlValue == null) xmlValue = new StringValue(text);
+
         return xmlValue;
     }
 
+    /**
+     * @return the unescaped text of a String, {@link StringValue}, {@link CharSequenceValue} or
+     * {@link LargeTextValue} value, the serialized form of any other kind of {@link XmlValue}, or null when
+     * there is no value
+     */
+    public String getText() {
+        String plainText = getPlainText();
+        if (plainText != null || xmlValue == null) return plainText;
+
+        if (xmlValue instanceof CharSequenceValue) return ((CharSequenceValue) xmlValue).getValue().toString();
+        if (xmlValue instanceof LargeTextValue) return ((LargeTextValue) xmlValue).getText();
+
+        return xmlValue.toString();
+    }
+
     public void setValue(XmlValue xmlValue) {
         this.xmlValue = xmlValue;
+        this.text = null;
+        invalidateHash();
     }
 
     public void setValue(String value) {
-        setValue(value == null ? null : new StringValue(value));
+        this.xmlValue = null;
+        this.text = value;
+        invalidateHash();
     }
 
     /**
@@ -108,17 +216,79 @@ public class XmlElement {
         }
 
         child.parent = this;
+        if (children == NO_CHILDREN) children = new ArrayList<>(4);
         children.add(child);
+        if (childrenByTag != null) index(child);
+        invalidateHash();
 
         return this;
     }
 
+    private void index(XmlElement child) {
+        List<XmlElement> sameTag = childrenByTag.get(child.tag);
+        if (sameTag == null) {
+            sameTag = new ArrayList<>(1);
+            childrenByTag.put(child.tag, sameTag);
+        }
+
+        sameTag.add(child);
+    }
+
     public String prettyPrint(int indentation) {
         return prettyPrint(indentation, true);
     }
 
     public String prettyPrint(int indentation, boolean writeNewLine) {
-        return prettyPrint(indentation, 0, writeNewLine);
+        StringBuilder builder = new StringBuilder();
+        try {
+            writeTo(builder, indentation, writeNewLine);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Write this XmlElement and its children to the given Appendable in a single pass, without building
+     * intermediate Strings. The output is identical to {@link #toString()}.
+     *
+     * @param out Appendable
+     * @throws IOException when the Appendable fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        writeTo(out, 0, true);
+    }
+
+    /**
+     * Write this XmlElement and its children to the given Appendable in a single pass, without building
+     * intermediate Strings. The output is identical to {@link #prettyPrint(int, boolean)}.
+     *
+     * @param out          Appendable
+     * @param indentation  the number of spaces per nesting level
+     * @param writeNewLine whether a line separator is written after each element
+     * @throws IOException when the Appendable fails
+     */
+    public void writeTo(Appendable out, int indentation, boolean writeNewLine) throws IOException {
+        write(out, indentation, writeNewLine);
+    }
+
+    /**
+     * Write this XmlElement and its children to the given OutputStream, encoded with the given Charset.
+     * The stream is flushed but not closed.
+     *
+     * @param out     OutputStream
+     * @param charset Charset
+     * @throws IOException when the OutputStream fails
+     */
+    public void writeTo(OutputStream out, Charset charset) throws IOException {
+        writeTo(out, charset, 0, true);
+    }
+
+    public void writeTo(OutputStream out, Charset charset, int indentation, boolean writeNewLine) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+        writeTo(writer, indentation, writeNewLine);
+        writer.flush();
     }
 
     /**
@@ -145,103 +315,243 @@ public class XmlElement {
      * @return String
      */
     public static String padLeft(String source, String paddingChars, int maxLengthOfString) {
-        StringBuffer buffer = new StringBuffer(source == null ? "" : source);
-        while (buffer.length() + paddingChars.length() <= maxLengthOfString) {
-            buffer.insert(0, paddingChars);
+        String value = source == null ? "" : source;
+        if (paddingChars.isEmpty() || value.length() + paddingChars.length() > maxLengthOfString) return value;
+
+        int count = (maxLengthOfString - value.length()) / paddingChars.length();
+        StringBuilder builder = new StringBuilder(count * paddingChars.length() + value.length());
+        for (int i = 0; i < count; i++) {
+            builder.append(paddingChars);
         }
 
-        return buffer.toString();
+        return builder.append(value).toString();
     }
 
+    /**
+     * Two elements are equal when they have the same tag, value, attributes and children, wherever they are
+     * in their documents: the parent is not compared.  The trees are compared without recursion, and
+     * subtrees with different hash codes are not compared at all.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        XmlElement that = (XmlElement) o;
-        return Objects.equals(tag, that.tag) &&
-                Objects.equals(xmlValue, that.xmlValue) &&
-                Objects.equals(attributes, that.attributes) &&
-                Objects.equals(children, that.children) &&
-                Objects.equals(parent, that.parent);
+
+        Deque<XmlElement> left = new ArrayDeque<>();
+        Deque<XmlElement> right = new ArrayDeque<>();
+        left.push(this);
+        right.push((XmlElement) o);
+
+        while (!left.isEmpty()) {
+            XmlElement element = left.pop();
+            XmlElement that = right.pop();
+            if (element == that) continue;
+            if (element.hashCode() != that.hashCode() || !element.equalsIgnoringChildren(that)) return false;
+
+            for (int i = 0; i < element.children.size(); i++) {
+                left.push(element.children.get(i));
+                right.push(that.children.get(i));
+            }
+        }
+
+        return true;
     }
 
+    /**
+     * The hash code covers the whole subtree but not the parent.  It is cached until the subtree changes
+     * through one of the setters or {@link #addChild(XmlElement)}; a change inside an {@link XmlValue} is not
+     * noticed.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(tag, xmlValue, attributes, children, parent);
+        if (hash == 0) computeHashes();
+
+        return hash;
     }
 
-    private String prettyPrint(int indentation, int startIndent, boolean writeNewLine) {
-        int currentIndent = indentation * startIndent;
-        StringWriter stringWriter = new StringWriter();
-        PrintWriter printWriter = new PrintWriter(stringWriter);
+    private boolean equalsIgnoringChildren(XmlElement that) {
+        if (!Objects.equals(tag, that.tag) || children.size() != that.children.size()) return false;
 
-        writeBeginTag(currentIndent, writeNewLine, printWriter);
-        writeValue(printWriter);
-        writeChildren(indentation, startIndent, writeNewLine, printWriter);
-        writeEndTag(currentIndent, writeNewLine, printWriter);
+        String plainText = getPlainText();
+        String thatPlainText = that.getPlainText();
+        boolean isValueEqual = plainText != null || thatPlainText != null
+                ? Objects.equals(plainText, thatPlainText)
+                : Objects.equals(xmlValue, that.xmlValue);
 
-        return stringWriter.toString();
+        return isValueEqual && getAttributes().equals(that.getAttributes());
     }
 
-    private void writeChildren(int indentation, int startIndent, boolean writeNewLine, PrintWriter printWriter) {
-        if (CollectionUtils.isEmpty(children)) return;
+    /**
+     * Computes the hashes of all elements in the subtree that have no cached hash, children first.
+     */
+    private void computeHashes() {
+        Deque<XmlElement> stack = new ArrayDeque<>();
+        stack.push(this);
+
+        while (!stack.isEmpty()) {
+            XmlElement element = stack.peek();
+
+            boolean areChildrenHashed = true;
+            for (XmlElement child : element.children) {
+                if (child.hash == 0) {
+                    stack.push(child);
+                    areChildrenHashed = false;
+                }
+            }
+
+            if (areChildrenHashed) {
+                stack.pop();
+                element.hash = element.computeHash();
+            }
+        }
+    }
+
+    /**
+     * @return the text when the value is a String or a StringValue, so both compare without allocating
+     */
+    private String getPlainText() {
+        if (text != null) return text;
 
-        if (writeNewLine) printWriter.println();
+        return xmlValue instanceof StringValue ? ((StringValue) xmlValue).getValue() : null;
+    }
 
-        for (XmlElement nextChild : children) {
-            printWriter.print(nextChild.prettyPrint(indentation, startIndent + 1, writeNewLine));
+    private int computeHash() {
+        int result = Objects.hashCode(tag);
+        String plainText = getPlainText();
+        result = 31 * result + (plainText != null ? plainText.hashCode() : Objects.hashCode(xmlValue));
+        result = 31 * result + getAttributes().hashCode();
+        for (XmlElement child : children) {
+            result = 31 * result + child.hash;
         }
+
+        // 0 means that no hash has been computed
+        return result == 0 ? 1 : result;
     }
 
-    private void writeValue(PrintWriter printWriter) {
-        if (getValue() != null) {
-            printWriter.print(xmlValue.toString());
+    /**
+     * Clears the cached hash of this element and its ancestors.  An element without a cached hash never has
+     * an ancestor with one, so the walk up stops at the first of those.
+     */
+    private void invalidateHash() {
+        for (XmlElement element = this; element != null && element.hash != 0; element = element.parent) {
+            element.hash = 0;
         }
     }
 
-    private void writeEndTag(int currentIndent, boolean writeNewLine, PrintWriter printWriter) {
-        if (getValue() == null && CollectionUtils.isEmpty(children)) return;
+    /**
+     * Writes the tree depth first with an explicit stack of the open elements, so the depth of the tree is
+     * not limited by the size of the thread stack.
+     */
+    private void write(Appendable out, int indentation, boolean writeNewLine) throws IOException {
+        List<XmlElement> openElements = new ArrayList<>();
+        int[] nextChildIndexes = new int[16];
+
+        if (writeOpening(0, writeNewLine, out)) openElements.add(this);
+
+        while (!openElements.isEmpty()) {
+            int depth = openElements.size() - 1;
+            XmlElement element = openElements.get(depth);
+            int childIndex = nextChildIndexes[depth];
+
+            if (childIndex == element.children.size()) {
+                element.writeEndTag(indentation * depth, writeNewLine, out);
+                openElements.remove(depth);
+                nextChildIndexes[depth] = 0;
+                continue;
+            }
+
+            nextChildIndexes[depth]++;
+
+            XmlElement child = element.children.get(childIndex);
+            if (child.writeOpening(indentation * (depth + 1), writeNewLine, out)) {
+                if (openElements.size() == nextChildIndexes.length) {
+                    nextChildIndexes = Arrays.copyOf(nextChildIndexes, nextChildIndexes.length * 2);
+                }
+
+                openElements.add(child);
+            }
+        }
+    }
 
-        if (!CollectionUtils.isEmpty(children)) {
-            printWriter.print(padLeft("", " ", currentIndent));
+    /**
+     * Writes the begin tag and the value, and the end tag as well when there are no children.
+     *
+     * @return true when the children and the end tag still have to be written
+     */
+    private boolean writeOpening(int currentIndent, boolean writeNewLine, Appendable out) throws IOException {
+        writeBeginTag(currentIndent, writeNewLine, out);
+        writeValue(out);
+
+        if (children.isEmpty()) {
+            writeEndTag(currentIndent, writeNewLine, out);
+            return false;
         }
 
-        printWriter.print("</");
-        printWriter.print(getTag());
-        printWriter.print(">");
+        if (writeNewLine) out.append(LINE_SEPARATOR);
+        return true;
+    }
 
-        if (writeNewLine) printWriter.println();
+    private void writeValue(Appendable out) throws IOException {
+        if (text != null) {
+            XmlEscaper.DEFAULT.escape(text, out);
+        } else if (xmlValue != null) {
+            xmlValue.writeTo(out);
+        }
     }
 
-    private void writeBeginTag(int currentIndent, boolean writeNewLine, PrintWriter printWriter) {
-        printWriter.print(padLeft("", " ", currentIndent));
-        printWriter.print("<");
-        printWriter.print(getTag());
+    private boolean hasValue() {
+        return text != null || xmlValue != null;
+    }
+
+    private void writeEndTag(int currentIndent, boolean writeNewLine, Appendable out) throws IOException {
+        if (!hasValue() && children.isEmpty()) return;
+
+        if (!children.isEmpty()) {
+            writeIndent(currentIndent, out);
+        }
+
+        out.append("</");
+        out.append(getTag());
+        out.append('>');
+
+        if (writeNewLine) out.append(LINE_SEPARATOR);
+    }
+
+    private void writeBeginTag(int currentIndent, boolean writeNewLine, Appendable out) throws IOException {
+        writeIndent(currentIndent, out);
+        out.append('<');
+        out.append(getTag());
 
-        writeAttributes(printWriter);
+        writeAttributes(out);
 
-        if (getValue() == null && CollectionUtils.isEmpty(children)) {
-            printWriter.print("/>");
-            if (writeNewLine) printWriter.println();
+        if (!hasValue() && children.isEmpty()) {
+            out.append("/>");
+            if (writeNewLine) out.append(LINE_SEPARATOR);
         } else {
-            printWriter.print(">");
+            out.append('>');
         }
     }
 
-    private void writeAttributes(PrintWriter printWriter) {
+    private void writeAttributes(Appendable out) throws IOException {
         if (attributes == null) return;
 
-        for (String key : attributes.keySet()) {
+        for (int i = 0; i < attributes.size(); i++) {
+            String key = attributes.nameAt(i);
             if (key == null) continue;
 
-            String value = attributes.get(key);
+            String value = attributes.valueAt(i);
 
-            printWriter.print(" ");
-            printWriter.print(key);
-            printWriter.print("=\"");
-            printWriter.print(value == null ? "" : value);
-            printWriter.print('"');
+            out.append(' ');
+            out.append(key);
+            out.append("=\"");
+            out.append(value == null ? "" : value);
+            out.append('"');
         }
     }
-}
 
+    private static void writeIndent(int currentIndent, Appendable out) throws IOException {
+        for (int remaining = currentIndent; remaining > 0; remaining -= SPACES.length()) {
+            out.append(SPACES, 0, Math.min(remaining, SPACES.length()));
+        }
+    }
+}
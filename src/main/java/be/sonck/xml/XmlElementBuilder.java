@@ -0,0 +1,282 @@
+package be.sonck.xml;
+
+import be.sonck.xml.value.LargeTextValue;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the {@link XmlElement} subtrees for the requested top elements out of parser events.  Shared by
+ * the SAX based {@link XmlElementHandler} and the StAX based {@link XmlElementReader}.
+ *
+ * @author Johan Sonck
+ */
+class XmlElementBuilder {
+
+	/**
+	 * The names to match when all selectors are plain names, null otherwise.
+	 */
+	private final Set<String> topElementsToParse;
+	private final XmlSelector[] selectors;
+	private static final int MAX_RETAINED_BUFFER_CAPACITY = 64 * 1024;
+
+	private long[] states = new long[0];
+	private int depth;
+	private XmlSymbolTable symbolTable = new XmlSymbolTable();
+
+	// One reusable text buffer per nesting level inside the current top element.
+	private StringBuilder[] textBuffers = new StringBuilder[8];
+	private int elementDepth;
+	private WhitespacePolicy whitespacePolicy = WhitespacePolicy.TRIM;
+	private int maxTextLength = Integer.MAX_VALUE;
+	private int largeTextThreshold = Integer.MAX_VALUE;
+	// The text per nesting level that outgrew the threshold and is collected outside of its text buffer.
+	private LargeTextValue[] largeTexts = new LargeTextValue[8];
+
+	private XmlElement currentTopElement;
+	private XmlElement currentElement;
+
+	XmlElementBuilder(List<XmlSelector> selectors) {
+		this.selectors = selectors.toArray(new XmlSelector[selectors.size()]);
+		this.topElementsToParse = simpleNames(this.selectors);
+	}
+
+	void setSymbolTable(XmlSymbolTable symbolTable) {
+		this.symbolTable = symbolTable == null ? XmlSymbolTable.NONE : symbolTable;
+	}
+
+	void setWhitespacePolicy(WhitespacePolicy whitespacePolicy) {
+		this.whitespacePolicy = whitespacePolicy;
+	}
+
+	void setMaxTextLength(int maxTextLength) {
+		this.maxTextLength = maxTextLength;
+	}
+
+	void setLargeTextThreshold(int largeTextThreshold) {
+		this.largeTextThreshold = largeTextThreshold;
+	}
+
+	/**
+	 * @return true when the events are currently part of a requested top element
+	 */
+	boolean isBuilding() {
+		return currentElement != null;
+	}
+
+	/**
+	 * @return true when an element was created for the given element name, so its attributes should be
+	 * passed to {@link #setAttribute(String, String)}
+	 */
+	boolean startElement(String uri, String localName, XmlSelector.AttributeSource attributes) {
+		if (currentTopElement != null) {
+			// An element is currently being parsed.  Create a child for the current element
+			// and attach it.
+			XmlElement newElement = new XmlElement(currentElement, symbolTable.canonicalize(localName));
+			currentElement = newElement;
+			startText();
+
+		} else if (isRequested(uri, localName, attributes)) {
+			// A requested top element was encountered.  Create a new top element.
+			currentTopElement = new XmlElement(symbolTable.canonicalize(localName));
+			currentElement = currentTopElement;
+			startText();
+		}
+
+		return currentElement != null;
+	}
+
+	void setAttribute(String name, String value) {
+		currentElement.setAttribute(symbolTable.canonicalize(name), value);
+	}
+
+	/**
+	 * Collects a chunk of character data.  A parser may split the text of one element over several chunks;
+	 * the value is only set once the end of the element is reached.
+	 */
+	void characters(char[] ch, int start, int length) {
+		// Text outside of a requested top element is ignored without being copied.
+		if (currentElement == null) return;
+
+		StringBuilder buffer = textBuffers[elementDepth];
+		LargeTextValue largeText = largeTexts[elementDepth];
+		long textLength = largeText == null ? buffer.length() : largeText.length();
+		if (textLength + length > maxTextLength) {
+			throw new IllegalStateException("the text of element <" + currentElement.getTag()
+					+ "> exceeds the maximum of " + maxTextLength + " characters");
+		}
+
+		if (largeText == null && textLength + length <= largeTextThreshold) {
+			buffer.append(ch, start, length);
+			return;
+		}
+
+		try {
+			if (largeText == null) {
+				// From here on the text goes straight into a value that moves it to a temporary file.  The
+				// buffer only keeps the whitespace that may still turn out to be trailing.
+				largeText = new LargeTextValue(largeTextThreshold);
+				largeTexts[elementDepth] = largeText;
+
+				String head = buffer.toString();
+				buffer.setLength(0);
+				whitespacePolicy.append(head, buffer, largeText);
+			}
+
+			whitespacePolicy.append(CharBuffer.wrap(ch, start, length), buffer, largeText);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the top element when its end has been reached, null otherwise
+	 */
+	XmlElement endElement() {
+		// No requested element is being parsed.  Only the selector states have to follow.
+		if (currentElement == null) {
+			popStates();
+			return null;
+		}
+
+		endText();
+
+		if (currentElement == currentTopElement) {
+			// The end of the currently processing top element has been reached.  Hand it over and
+			// remove the currently processing element.
+			XmlElement topElement = currentTopElement;
+			currentElement = null;
+			currentTopElement = null;
+			popStates();
+
+			return topElement;
+		}
+
+		currentElement = currentElement.getParent();
+		return null;
+	}
+
+	/**
+	 * Forgets the element that is being built, after a failed parse or before a new one.  The large text
+	 * values in it have not been handed over to anyone, so they are closed here.
+	 */
+	void discard() {
+		for (int i = 0; i < largeTexts.length; i++) {
+			if (largeTexts[i] != null) close(largeTexts[i]);
+			largeTexts[i] = null;
+		}
+
+		if (currentTopElement != null) closeLargeTexts(currentTopElement);
+
+		currentTopElement = null;
+		currentElement = null;
+		elementDepth = 0;
+		depth = 0;
+	}
+
+	private void startText() {
+		elementDepth++;
+		if (elementDepth == textBuffers.length) {
+			textBuffers = Arrays.copyOf(textBuffers, textBuffers.length * 2);
+			largeTexts = Arrays.copyOf(largeTexts, largeTexts.length * 2);
+		}
+
+		StringBuilder buffer = textBuffers[elementDepth];
+		if (buffer == null || buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+			textBuffers[elementDepth] = new StringBuilder();
+		} else {
+			buffer.setLength(0);
+		}
+	}
+
+	private void endText() {
+		StringBuilder buffer = textBuffers[elementDepth];
+		LargeTextValue largeText = largeTexts[elementDepth];
+		if (largeText != null) {
+			largeTexts[elementDepth] = null;
+			try {
+				whitespacePolicy.end(buffer, largeText);
+			} catch (IOException e) {
+				close(largeText);
+				throw new RuntimeException(e);
+			}
+
+			if (largeText.length() > 0) {
+				currentElement.setValue(largeText);
+			} else {
+				close(largeText);
+			}
+		} else if (buffer.length() > 0) {
+			String value = whitespacePolicy.apply(buffer);
+			if (value != null) currentElement.setValue(value);
+		}
+
+		elementDepth--;
+	}
+
+	private boolean isRequested(String uri, String localName, XmlSelector.AttributeSource attributes) {
+		if (topElementsToParse != null) return topElementsToParse.contains(localName);
+
+		return pushStates(uri, localName, attributes);
+	}
+
+	/**
+	 * Computes the selector states of a new element outside of a top element.
+	 * @return true when one of the selectors matches the element
+	 */
+	private boolean pushStates(String uri, String localName, XmlSelector.AttributeSource attributes) {
+		int count = selectors.length;
+		int offset = depth * count;
+		if (states.length < offset + count) {
+			states = Arrays.copyOf(states, Math.max(16 * count, states.length * 2));
+		}
+
+		boolean isMatched = false;
+		for (int i = 0; i < count; i++) {
+			long parentStates = depth == 0 ? selectors[i].initialStates() : states[offset - count + i];
+			long elementStates = parentStates == 0 ? 0 : selectors[i].nextStates(parentStates, uri, localName, attributes);
+
+			isMatched |= (elementStates & XmlSelector.MATCHED) != 0;
+			states[offset + i] = elementStates & ~XmlSelector.MATCHED;
+		}
+
+		depth++;
+		return isMatched;
+	}
+
+	private void popStates() {
+		if (topElementsToParse == null) depth--;
+	}
+
+	private static void closeLargeTexts(XmlElement element) {
+		if (element.getValue() instanceof LargeTextValue) close((LargeTextValue) element.getValue());
+
+		for (XmlElement child : element.getChildren()) {
+			closeLargeTexts(child);
+		}
+	}
+
+	private static void close(LargeTextValue largeText) {
+		try {
+			largeText.close();
+		} catch (IOException e) {
+			// The temporary file is deleted when the JVM exits.
+		}
+	}
+
+	private static Set<String> simpleNames(XmlSelector[] selectors) {
+		Set<String> names = new HashSet<String>();
+		for (XmlSelector selector : selectors) {
+			String name = selector.getSimpleName();
+			if (name == null) return null;
+
+			names.add(name);
+		}
+
+		return names;
+	}
+}
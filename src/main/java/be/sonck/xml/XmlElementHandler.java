@@ -3,10 +3,9 @@ package be.sonck.xml;
 import org.apache.log4j.Logger;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -16,34 +15,122 @@ import java.util.List;
 public class XmlElementHandler<T> extends DefaultHandler {
 
 	private Logger logger = Logger.getLogger(XmlElementHandler.class);
-	private List<String> topElementsToParse;
-	private XmlElement currentTopElement;
-	private XmlElement currentElement;
+	private XmlElementBuilder builder;
 	
 	private XmlHandlerListener<T> listener;
+	private XmlProgressListener progressListener;
 	private XmlElementToObjectConverter<T> converter;
+	private XmlHandlerInstrumentation instrumentation = XmlHandlerInstrumentation.NONE;
+	private long elementsToSkip;
+
+	private Attributes currentAttributes;
+	private final XmlSelector.AttributeSource attributeSource = new XmlSelector.AttributeSource() {
+		@Override
+		public String getAttributeValue(String localName) {
+			if (currentAttributes == null) return null;
+
+			int length = currentAttributes.getLength();
+			for (int i = 0; i < length; i++) {
+				if (localName.equals(currentAttributes.getLocalName(i))) return currentAttributes.getValue(i);
+			}
+
+			return null;
+		}
+	};
 
 	/**
 	 * For each name in the topElementsToParse argument, when the parser encounters an element with that name,
-	 * an {@link XmlElement} will be created that holds all content in that element.
+	 * an {@link XmlElement} will be created that holds all content in that element.  Each entry may also be
+	 * a path as described in {@link XmlSelector}.
 	 * @param topElementsToParse the names of all elements for which an {@link XmlElement} should be created 
 	 */
 	public XmlElementHandler(List<String> topElementsToParse, XmlHandlerListener<T> listener, 
 			XmlElementToObjectConverter<T> converter) {
 		
-		this.topElementsToParse = new ArrayList<String>(topElementsToParse);
+		this(new XmlElementBuilder(XmlSelector.compileAll(topElementsToParse)), listener, converter);
+	}
+
+	private XmlElementHandler(XmlElementBuilder builder, XmlHandlerListener<T> listener,
+			XmlElementToObjectConverter<T> converter) {
+
+		this.builder = builder;
 		this.listener = listener;
 		this.converter = converter;
+		if (listener instanceof XmlProgressListener) this.progressListener = (XmlProgressListener) listener;
+	}
+
+	/**
+	 * Creates a handler that builds an {@link XmlElement} for every element matched by one of the selectors.
+	 * @param selectors the compiled paths of the elements for which an {@link XmlElement} should be created
+	 */
+	public static <T> XmlElementHandler<T> forSelectors(List<XmlSelector> selectors, XmlHandlerListener<T> listener,
+			XmlElementToObjectConverter<T> converter) {
+
+		return new XmlElementHandler<T>(new XmlElementBuilder(selectors), listener, converter);
+	}
+
+	/**
+	 * @param instrumentation receives the counts and timings of this handler, {@link XmlHandlerInstrumentation#NONE}
+	 * to switch them off
+	 */
+	public void setInstrumentation(XmlHandlerInstrumentation instrumentation) {
+		this.instrumentation = instrumentation == null ? XmlHandlerInstrumentation.NONE : instrumentation;
+	}
+
+	/**
+	 * @param symbolTable canonicalizes the tag and attribute names of the built elements; share one table
+	 * between parses to share the names between their elements as well, {@link XmlSymbolTable#NONE} or null
+	 * to keep the names as the parser reports them
+	 */
+	public void setSymbolTable(XmlSymbolTable symbolTable) {
+		builder.setSymbolTable(symbolTable);
+	}
+
+	/**
+	 * @param whitespacePolicy what happens with the whitespace in element text, {@link WhitespacePolicy#TRIM}
+	 * by default
+	 */
+	public void setWhitespacePolicy(WhitespacePolicy whitespacePolicy) {
+		builder.setWhitespacePolicy(whitespacePolicy);
+	}
+
+	/**
+	 * @param maxTextLength the maximum number of characters in the text of a single element; longer text
+	 * aborts the parse with an IllegalStateException
+	 */
+	public void setMaxTextLength(int maxTextLength) {
+		builder.setMaxTextLength(maxTextLength);
+	}
+
+	/**
+	 * @param largeTextThreshold the number of characters above which the text of an element is collected
+	 * into a {@link be.sonck.xml.value.LargeTextValue} that moves it to a temporary file, instead of into a
+	 * String.  Once an element has been handed over, its values belong to whoever receives it, which closes
+	 * them to delete their files.  The values of an element that is never handed over, because the parse
+	 * fails, are closed by this handler.
+	 */
+	public void setLargeTextThreshold(int largeTextThreshold) {
+		builder.setLargeTextThreshold(largeTextThreshold);
+	}
+
+	/**
+	 * @param count the number of top elements at the start of the document that have been delivered before,
+	 * for instance by a parse that failed later on; they are built but neither converted nor delivered
+	 */
+	public void setElementsToSkip(long count) {
+		this.elementsToSkip = count;
 	}
 
 	@Override
 	public final void characters(char[] ch, int start, int length) throws SAXException {
-		String value = String.valueOf(Arrays.copyOfRange(ch, start, start + length)).trim();
-		logger.debug("characters(" + value + ")");
-		
-		if (currentElement != null && value.length() > 0) {
-			currentElement.setValue(value);
+		if (logger.isDebugEnabled()) {
+			logger.debug("characters(" + String.valueOf(ch, start, length).trim() + ")");
 		}
+		instrumentation.eventSeen();
+		instrumentation.textRead(length);
+		
+		builder.characters(ch, start, length);
+		if (progressListener != null) progressListener.progress();
 	}
 	
 	@Override
@@ -53,53 +140,53 @@ public class XmlElementHandler<T> extends DefaultHandler {
 
 	@Override
 	public final void startDocument() throws SAXException {
+		// Forget what a failed parse with this handler left behind.
+		builder.discard();
 		listener.start();
 	}
 
+	@Override
+	public void fatalError(SAXParseException e) throws SAXException {
+		builder.discard();
+		throw e;
+	}
+
 	@Override
 	public final void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
-		logger.debug("startElement(" + localName + ")");
-		
-		if (currentTopElement != null) {
-			// An element is currently being parsed.  Create a child for the current element
-			// and attach it.
-			XmlElement newElement = new XmlElement(currentElement, localName);
-			currentElement = newElement;
-			
-		} else if (topElementsToParse.contains(localName)) {
-			// A requested top element was encountered.  Create a new top element.
-			currentTopElement = new XmlElement(localName);
-			currentElement = currentTopElement;
+		if (logger.isDebugEnabled()) {
+			logger.debug("startElement(" + localName + ")");
 		}
+		instrumentation.eventSeen();
 		
-		if (currentElement != null && attributes != null) {
+		currentAttributes = attributes;
+		boolean isBuilding = builder.startElement(uri, localName, attributeSource);
+		currentAttributes = null;
+
+		if (isBuilding && attributes != null) {
 			int length = attributes.getLength();
 			for (int i = 0; i < length; i++) {
 				String attributeName = attributes.getLocalName(i);
 				String attributeValue = attributes.getValue(i);
 				
-				currentElement.setAttribute(attributeName, attributeValue);
+				builder.setAttribute(attributeName, attributeValue);
 			}
 		}
 	}
 
 	@Override
 	public final void endElement(String uri, String localName, String name) throws SAXException {
-		logger.debug("endElement(" + localName + ")");
-		
-		// No requested element is being parsed.  Nothing to do.
-		if (currentElement == null) return;
+		if (logger.isDebugEnabled()) {
+			logger.debug("endElement(" + localName + ")");
+		}
+		instrumentation.eventSeen();
 		
-		if (currentElement == currentTopElement) {
-			// The end of the currently processing top element has been reached.  Notify the subclass
-			// that a new XmlElement has been created and remove the currently processing element.
-			newTopElement(currentTopElement);
-			currentElement = null;
-			currentTopElement = null;
-			
-		} else {
-			currentElement = currentElement.getParent();
+		XmlElement topElement = builder.endElement();
+		if (topElement != null) {
+			// The end of the currently processing top element has been reached.  Notify the listener
+			// that a new XmlElement has been created.
+			newTopElement(topElement);
 		}
+		if (progressListener != null) progressListener.progress();
 	}
 	
 	/**
@@ -108,6 +195,24 @@ public class XmlElementHandler<T> extends DefaultHandler {
 	 * @param element the new created {@link XmlElement}
 	 */
 	public final void newTopElement(XmlElement element) {
-		listener.newElement(converter.convert(element));
+		if (elementsToSkip > 0) {
+			elementsToSkip--;
+			return;
+		}
+
+		if (instrumentation == XmlHandlerInstrumentation.NONE) {
+			listener.newElement(converter.convert(element));
+			return;
+		}
+
+		instrumentation.elementMatched();
+
+		long start = System.nanoTime();
+		T converted = converter.convert(element);
+		long convertedAt = System.nanoTime();
+		listener.newElement(converted);
+
+		instrumentation.elementConverted(convertedAt - start);
+		instrumentation.elementDelivered(System.nanoTime() - convertedAt);
 	}
 }
@@ -0,0 +1,225 @@
+package be.sonck.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull based alternative to {@link XmlElementHandler}.  The document is read with an {@link XMLStreamReader}
+ * on the calling thread, so elements can be consumed through a plain {@link Iterator} without a parser
+ * thread or a queue.  Outside of a requested top element only start and end element events are looked at;
+ * text and other events are passed over without being materialized.
+ *
+ * @author Johan Sonck
+ */
+public class XmlElementReader<T> implements Iterator<T>, AutoCloseable {
+
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+	private final XMLStreamReader reader;
+	private final XmlElementBuilder builder;
+	private final XmlElementToObjectConverter<T> converter;
+	private final XmlSelector.AttributeSource attributeSource = new XmlSelector.AttributeSource() {
+		@Override
+		public String getAttributeValue(String localName) {
+			return reader.getAttributeValue(null, localName);
+		}
+	};
+	private Closeable input;
+	private XmlElement nextTopElement;
+	private boolean isDone;
+
+	public XmlElementReader(Reader reader, List<String> topElementsToParse, XmlElementToObjectConverter<T> converter) {
+		this(createStreamReader(reader), topElementsToParse, converter);
+	}
+
+	public XmlElementReader(InputStream inputStream, List<String> topElementsToParse, XmlElementToObjectConverter<T> converter) {
+		this(createStreamReader(inputStream), topElementsToParse, converter);
+	}
+
+	public XmlElementReader(XMLStreamReader reader, List<String> topElementsToParse, XmlElementToObjectConverter<T> converter) {
+		this(reader, new XmlElementBuilder(XmlSelector.compileAll(topElementsToParse)), converter);
+	}
+
+	private XmlElementReader(XMLStreamReader reader, XmlElementBuilder builder, XmlElementToObjectConverter<T> converter) {
+		this.reader = reader;
+		this.builder = builder;
+		this.converter = converter;
+	}
+
+	/**
+	 * Creates a reader that builds an {@link XmlElement} for every element matched by one of the selectors.
+	 */
+	public static <T> XmlElementReader<T> forSelectors(XMLStreamReader reader, List<XmlSelector> selectors,
+			XmlElementToObjectConverter<T> converter) {
+
+		return new XmlElementReader<T>(reader, new XmlElementBuilder(selectors), converter);
+	}
+
+	/**
+	 * @param symbolTable canonicalizes the tag and attribute names of the built elements; share one table
+	 * between parses to share the names between their elements as well, {@link XmlSymbolTable#NONE} or null
+	 * to keep the names as the parser reports them
+	 */
+	public void setSymbolTable(XmlSymbolTable symbolTable) {
+		builder.setSymbolTable(symbolTable);
+	}
+
+	/**
+	 * @param whitespacePolicy what happens with the whitespace in element text, {@link WhitespacePolicy#TRIM}
+	 * by default
+	 */
+	public void setWhitespacePolicy(WhitespacePolicy whitespacePolicy) {
+		builder.setWhitespacePolicy(whitespacePolicy);
+	}
+
+	/**
+	 * @param maxTextLength the maximum number of characters in the text of a single element; longer text
+	 * aborts the parse with an IllegalStateException
+	 */
+	public void setMaxTextLength(int maxTextLength) {
+		builder.setMaxTextLength(maxTextLength);
+	}
+
+	/**
+	 * @param largeTextThreshold the number of characters above which the text of an element is collected
+	 * into a {@link be.sonck.xml.value.LargeTextValue} that moves it to a temporary file, instead of into a
+	 * String.  Once an element has been handed over, its values belong to whoever receives it, which closes
+	 * them to delete their files.  The values of an element that is never handed over, because the parse
+	 * fails, are closed by this reader, at the latest when it is closed.
+	 */
+	public void setLargeTextThreshold(int largeTextThreshold) {
+		builder.setLargeTextThreshold(largeTextThreshold);
+	}
+
+	/**
+	 * Reads the whole document and passes every converted top element to the listener, just like
+	 * {@link XmlElementHandler} does.
+	 * @param listener XmlHandlerListener
+	 */
+	public void parse(XmlHandlerListener<T> listener) {
+		listener.start();
+
+		while (hasNext()) {
+			listener.newElement(next());
+		}
+
+		listener.end();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextTopElement == null && !isDone) {
+			nextTopElement = readTopElement();
+		}
+
+		return nextTopElement != null;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+
+		XmlElement element = nextTopElement;
+		nextTopElement = null;
+
+		return converter.convert(element);
+	}
+
+	@Override
+	public void close() {
+		builder.discard();
+		try {
+			reader.close();
+			if (input != null) input.close();
+		} catch (XMLStreamException | IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Makes {@link #close()} close the given input as well, since an XMLStreamReader never closes its input.
+	 */
+	XmlElementReader<T> closing(Closeable input) {
+		this.input = input;
+		return this;
+	}
+
+	private XmlElement readTopElement() {
+		try {
+			while (reader.hasNext()) {
+				int event = reader.next();
+
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					startElement();
+
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					XmlElement topElement = builder.endElement();
+					if (topElement != null) return topElement;
+
+				} else if (!builder.isBuilding()) {
+					// Outside of a requested top element only the element structure matters.
+					continue;
+
+				} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+					builder.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+			}
+
+			isDone = true;
+			return null;
+
+		} catch (XMLStreamException e) {
+			builder.discard();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void startElement() {
+		if (!builder.startElement(reader.getNamespaceURI(), reader.getLocalName(), attributeSource)) return;
+
+		int length = reader.getAttributeCount();
+		for (int i = 0; i < length; i++) {
+			builder.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+		return factory;
+	}
+
+	private static XMLStreamReader createStreamReader(Reader reader) {
+		try {
+			return INPUT_FACTORY.createXMLStreamReader(reader);
+		} catch (XMLStreamException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static XMLStreamReader createStreamReader(InputStream inputStream) {
+		try {
+			return INPUT_FACTORY.createXMLStreamReader(inputStream);
+		} catch (XMLStreamException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static XMLStreamReader createStreamReader(InputStream inputStream, String encoding) {
+		try {
+			return INPUT_FACTORY.createXMLStreamReader(inputStream, encoding);
+		} catch (XMLStreamException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -3,4 +3,11 @@ package be.sonck.xml;
 public interface XmlElementToObjectConverter<T> {
 	
 	public T convert(XmlElement element);
+
+	/**
+	 * @return a converter that passes the {@link XmlElement} on unchanged
+	 */
+	public static XmlElementToObjectConverter<XmlElement> identity() {
+		return element -> element;
+	}
 }
@@ -0,0 +1,89 @@
+package be.sonck.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Determines the encoding of an XML document from its byte order mark or its XML declaration, as described
+ * in appendix F of the XML specification.
+ *
+ * @author Johan Sonck
+ */
+public final class XmlEncodingDetector {
+
+	private static final int HEAD_SIZE = 256;
+
+	private XmlEncodingDetector() {
+	}
+
+	/**
+	 * @param path the XML file
+	 * @return the name of the encoding, UTF-8 when nothing indicates otherwise
+	 */
+	public static String detect(Path path) throws IOException {
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			byte[] head = new byte[HEAD_SIZE];
+			int length = 0;
+			int count;
+			while (length < HEAD_SIZE && (count = inputStream.read(head, length, HEAD_SIZE - length)) > 0) {
+				length += count;
+			}
+
+			return detect(head, length);
+		}
+	}
+
+	public static String detect(byte[] head, int length) {
+		if (startsWith(head, length, 0xEF, 0xBB, 0xBF)) return "UTF-8";
+		if (startsWith(head, length, 0xFE, 0xFF)) return "UTF-16BE";
+		if (startsWith(head, length, 0xFF, 0xFE)) return "UTF-16LE";
+		if (startsWith(head, length, 0x00, 0x3C, 0x00, 0x3F)) return "UTF-16BE";
+		if (startsWith(head, length, 0x3C, 0x00, 0x3F, 0x00)) return "UTF-16LE";
+
+		String declaration = declaration(head, length);
+		if (declaration == null) return "UTF-8";
+
+		String encoding = pseudoAttribute(declaration, "encoding");
+		return encoding == null ? "UTF-8" : encoding;
+	}
+
+	private static String declaration(byte[] head, int length) {
+		// Any ASCII compatible encoding can be read as ISO-8859-1 up to the end of the declaration.
+		String text = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+		if (!text.startsWith("<?xml")) return null;
+
+		int end = text.indexOf("?>");
+		return end < 0 ? null : text.substring(0, end);
+	}
+
+	private static String pseudoAttribute(String declaration, String name) {
+		int index = declaration.indexOf(name);
+		if (index < 0) return null;
+
+		int equals = declaration.indexOf('=', index + name.length());
+		if (equals < 0) return null;
+
+		int start = equals + 1;
+		while (start < declaration.length() && Character.isWhitespace(declaration.charAt(start))) start++;
+		if (start >= declaration.length()) return null;
+
+		char quote = declaration.charAt(start);
+		int end = declaration.indexOf(quote, start + 1);
+		if ((quote != '"' && quote != '\'') || end < 0) return null;
+
+		return declaration.substring(start + 1, end);
+	}
+
+	private static boolean startsWith(byte[] head, int length, int... prefix) {
+		if (length < prefix.length) return false;
+
+		for (int i = 0; i < prefix.length; i++) {
+			if ((head[i] & 0xFF) != prefix[i]) return false;
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,101 @@
+package be.sonck.xml;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Entry points for XML files on local disk.  The file is read through a {@link MappedFileInputStream} and
+ * handed to the parser as bytes, so the parser decodes it directly instead of through an
+ * InputStreamReader and a BufferedReader.  The encoding is taken from the byte order mark or the XML
+ * declaration.
+ *
+ * @author Johan Sonck
+ */
+public final class XmlFiles {
+
+    private XmlFiles() {
+    }
+
+    /**
+     * @return an InputSource for the file; the caller has to close its byte stream
+     */
+    public static InputSource inputSource(Path path) throws IOException {
+        String encoding = XmlEncodingDetector.detect(path);
+
+        InputSource inputSource = new InputSource(new MappedFileInputStream(path));
+        inputSource.setSystemId(path.toUri().toString());
+        inputSource.setEncoding(encoding);
+
+        return inputSource;
+    }
+
+    /**
+     * Parses the file with the given handler, typically an {@link XmlElementHandler}.
+     */
+    public static void parse(Path path, ContentHandler handler) {
+        try {
+            InputSource inputSource = inputSource(path);
+            try {
+                XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+                xmlReader.setContentHandler(handler);
+                xmlReader.parse(inputSource);
+            } finally {
+                inputSource.getByteStream().close();
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @see XmlStreams#elements(InputSource, List, XmlElementToObjectConverter)
+     */
+    public static <T> Stream<T> elements(Path path, List<String> topElementsToParse,
+                                         XmlElementToObjectConverter<T> converter) {
+        try {
+            InputSource inputSource = inputSource(path);
+            InputStream inputStream = inputSource.getByteStream();
+
+            return XmlStreams.elements(inputSource, topElementsToParse, converter).onClose(() -> {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return a pull based reader over the file; closing it closes the file
+     */
+    public static <T> XmlElementReader<T> reader(Path path, List<String> topElementsToParse,
+                                                 XmlElementToObjectConverter<T> converter) {
+        try {
+            String encoding = XmlEncodingDetector.detect(path);
+            InputStream inputStream = new MappedFileInputStream(path);
+
+            try {
+                return new XmlElementReader<>(XmlElementReader.createStreamReader(inputStream, encoding),
+                        topElementsToParse, converter).closing(inputStream);
+            } catch (RuntimeException e) {
+                inputStream.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package be.sonck.xml;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the events reported to it as an {@link XmlHandlerInstrumentation}.  One instance can be shared by
+ * handlers on several threads.  {@link #toMap()} gives a snapshot that can be published to any metrics
+ * system.
+ */
+public class XmlHandlerCounters implements XmlHandlerInstrumentation {
+
+	private final LongAdder events = new LongAdder();
+	private final LongAdder textCharacters = new LongAdder();
+	private final LongAdder elementsMatched = new LongAdder();
+	private final LongAdder converterNanos = new LongAdder();
+	private final LongAdder listenerNanos = new LongAdder();
+
+	@Override
+	public void eventSeen() {
+		events.increment();
+	}
+
+	@Override
+	public void textRead(int length) {
+		textCharacters.add(length);
+	}
+
+	@Override
+	public void elementMatched() {
+		elementsMatched.increment();
+	}
+
+	@Override
+	public void elementConverted(long nanos) {
+		converterNanos.add(nanos);
+	}
+
+	@Override
+	public void elementDelivered(long nanos) {
+		listenerNanos.add(nanos);
+	}
+
+	public long getEvents() {
+		return events.sum();
+	}
+
+	public long getTextCharacters() {
+		return textCharacters.sum();
+	}
+
+	public long getElementsMatched() {
+		return elementsMatched.sum();
+	}
+
+	public long getConverterNanos() {
+		return converterNanos.sum();
+	}
+
+	public long getListenerNanos() {
+		return listenerNanos.sum();
+	}
+
+	/**
+	 * @return the current value of every counter, keyed by metric name
+	 */
+	public Map<String, Long> toMap() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		map.put("xml.handler.events", getEvents());
+		map.put("xml.handler.text.characters", getTextCharacters());
+		map.put("xml.handler.elements.matched", getElementsMatched());
+		map.put("xml.handler.converter.nanos", getConverterNanos());
+		map.put("xml.handler.listener.nanos", getListenerNanos());
+
+		return map;
+	}
+
+	public void reset() {
+		events.reset();
+		textCharacters.reset();
+		elementsMatched.reset();
+		converterNanos.reset();
+		listenerNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "XmlHandlerCounters" + toMap();
+	}
+}
@@ -0,0 +1,57 @@
+package be.sonck.xml;
+
+/**
+ * Receives the hot path events of an {@link XmlElementHandler}.  The handler skips all measurements,
+ * including the clock reads, when it uses {@link #NONE}, which is the default.
+ *
+ * @see XmlHandlerCounters
+ */
+public interface XmlHandlerInstrumentation {
+
+	XmlHandlerInstrumentation NONE = new XmlHandlerInstrumentation() {
+		@Override
+		public void eventSeen() {
+		}
+
+		@Override
+		public void textRead(int length) {
+		}
+
+		@Override
+		public void elementMatched() {
+		}
+
+		@Override
+		public void elementConverted(long nanos) {
+		}
+
+		@Override
+		public void elementDelivered(long nanos) {
+		}
+	};
+
+	/**
+	 * Called for every start element, end element and character data event.
+	 */
+	void eventSeen();
+
+	/**
+	 * @param length the number of characters in a character data event
+	 */
+	void textRead(int length);
+
+	/**
+	 * Called when a requested top element has been completely built.
+	 */
+	void elementMatched();
+
+	/**
+	 * @param nanos the time spent in {@link XmlElementToObjectConverter#convert(XmlElement)}
+	 */
+	void elementConverted(long nanos);
+
+	/**
+	 * @param nanos the time spent in {@link XmlHandlerListener#newElement(Object)}
+	 */
+	void elementDelivered(long nanos);
+}
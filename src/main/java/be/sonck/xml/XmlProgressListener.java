@@ -0,0 +1,11 @@
+package be.sonck.xml;
+
+/**
+ * Implemented by an {@link XmlHandlerListener} that wants to hear from the {@link XmlElementHandler} while
+ * it parses, not only when a top element is complete.  The handler calls {@link #progress()} for every
+ * end tag and chunk of text, also in regions that hold no requested elements, on the parser thread.
+ */
+public interface XmlProgressListener {
+
+	public void progress();
+}
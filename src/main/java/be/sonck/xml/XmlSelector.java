@@ -0,0 +1,284 @@
+package be.sonck.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled selection of the elements that should become top elements.  The syntax is a small subset of
+ * XPath:
+ * <ul>
+ * <li>{@code item} matches every element named item, at any depth, which is what a plain name in
+ * topElementsToParse has always done</li>
+ * <li>{@code /feed/entry/item} matches only item elements with exactly that ancestry</li>
+ * <li>{@code /feed//item} matches item elements anywhere below the feed root element</li>
+ * <li>{@code *} matches any element name</li>
+ * <li>{@code atom:entry} or {@code {http://www.w3.org/2005/Atom}entry} match in a namespace; the prefix
+ * is resolved through the map given to {@link #compile(String, Map)}.  Names without a namespace match
+ * in any namespace</li>
+ * <li>{@code item[@type]} and {@code item[@type='book']} require an attribute, or an attribute value</li>
+ * </ul>
+ * A selector is evaluated incrementally: each open element keeps the set of path steps that its children
+ * may still match, so no ancestors have to be built to find a match.
+ *
+ * @author Johan Sonck
+ */
+public final class XmlSelector {
+
+	/**
+	 * Gives access to the attributes of the element that is being matched.
+	 */
+	interface AttributeSource {
+		/**
+		 * @return the value of the attribute with the given local name, or null when it is absent
+		 */
+		String getAttributeValue(String localName);
+	}
+
+	static final long MATCHED = Long.MIN_VALUE;
+
+	private static final int MAX_STEPS = 63;
+
+	private final String expression;
+	private final Step[] steps;
+
+	private XmlSelector(String expression, Step[] steps) {
+		this.expression = expression;
+		this.steps = steps;
+	}
+
+	public static XmlSelector compile(String expression) {
+		return compile(expression, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * @param expression the path to compile
+	 * @param namespaces maps the prefixes used in the expression onto namespace URIs
+	 * @return XmlSelector
+	 */
+	public static XmlSelector compile(String expression, Map<String, String> namespaces) {
+		return new Parser(expression, namespaces).parse();
+	}
+
+	public static List<XmlSelector> compileAll(List<String> expressions) {
+		List<XmlSelector> selectors = new ArrayList<XmlSelector>(expressions.size());
+		for (String expression : expressions) {
+			selectors.add(compile(expression));
+		}
+
+		return selectors;
+	}
+
+	/**
+	 * @return the local name when this selector is a plain name that matches at any depth, null otherwise
+	 */
+	String getSimpleName() {
+		if (steps.length != 1) return null;
+
+		Step step = steps[0];
+		boolean isSimple = step.isDescendant && step.namespaceUri == null && step.localName != null
+				&& step.predicates.length == 0;
+
+		return isSimple ? step.localName : null;
+	}
+
+	/**
+	 * @return the states a document root starts from
+	 */
+	long initialStates() {
+		return 1L;
+	}
+
+	/**
+	 * Computes the states of an element from the states of its parent.  The {@link #MATCHED} bit of the
+	 * result tells whether the element itself is matched; bit i is set when its children may match step i.
+	 */
+	long nextStates(long parentStates, String uri, String localName, AttributeSource attributes) {
+		long states = 0L;
+
+		for (int i = 0; i < steps.length; i++) {
+			if ((parentStates & (1L << i)) == 0) continue;
+
+			Step step = steps[i];
+			if (step.isDescendant) {
+				states |= 1L << i;
+			}
+
+			if (step.matches(uri, localName, attributes)) {
+				states |= i + 1 == steps.length ? MATCHED : 1L << (i + 1);
+			}
+		}
+
+		return states;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	private static final class Step {
+		private final boolean isDescendant;
+		private final String namespaceUri;
+		private final String localName;
+		private final Predicate[] predicates;
+
+		private Step(boolean isDescendant, String namespaceUri, String localName, List<Predicate> predicates) {
+			this.isDescendant = isDescendant;
+			this.namespaceUri = namespaceUri;
+			this.localName = localName;
+			this.predicates = predicates.toArray(new Predicate[predicates.size()]);
+		}
+
+		private boolean matches(String uri, String name, AttributeSource attributes) {
+			if (localName != null && !localName.equals(name)) return false;
+			if (namespaceUri != null && !namespaceUri.equals(uri)) return false;
+
+			for (Predicate predicate : predicates) {
+				if (!predicate.matches(attributes)) return false;
+			}
+
+			return true;
+		}
+	}
+
+	private static final class Predicate {
+		private final String attributeName;
+		private final String value;
+
+		private Predicate(String attributeName, String value) {
+			this.attributeName = attributeName;
+			this.value = value;
+		}
+
+		private boolean matches(AttributeSource attributes) {
+			String actual = attributes == null ? null : attributes.getAttributeValue(attributeName);
+			if (actual == null) return false;
+
+			return value == null || value.equals(actual);
+		}
+	}
+
+	private static final class Parser {
+		private final String expression;
+		private final Map<String, String> namespaces;
+		private int position;
+
+		private Parser(String expression, Map<String, String> namespaces) {
+			this.expression = expression;
+			this.namespaces = namespaces;
+		}
+
+		private XmlSelector parse() {
+			List<Step> steps = new ArrayList<Step>();
+
+			// A relative path matches at any depth.
+			boolean isDescendant = !expression.startsWith("/");
+
+			while (position < expression.length() || steps.isEmpty()) {
+				if (!steps.isEmpty() || expression.startsWith("/")) {
+					expect('/');
+					isDescendant = peek() == '/';
+					if (isDescendant) position++;
+				}
+
+				steps.add(parseStep(isDescendant));
+			}
+
+			if (steps.size() > MAX_STEPS) throw error("more than " + MAX_STEPS + " steps");
+
+			return new XmlSelector(expression, steps.toArray(new Step[steps.size()]));
+		}
+
+		private Step parseStep(boolean isDescendant) {
+			String namespaceUri = null;
+			String localName;
+
+			if (peek() == '*') {
+				position++;
+				localName = null;
+			} else {
+				String[] name = parseName();
+				namespaceUri = name[0];
+				localName = name[1];
+			}
+
+			List<Predicate> predicates = new ArrayList<Predicate>();
+			while (peek() == '[') {
+				position++;
+				expect('@');
+				String attributeName = parseName()[1];
+				String value = null;
+
+				if (peek() == '=') {
+					position++;
+					value = parseQuoted();
+				}
+
+				expect(']');
+				predicates.add(new Predicate(attributeName, value));
+			}
+
+			return new Step(isDescendant, namespaceUri, localName, predicates);
+		}
+
+		private String[] parseName() {
+			String namespaceUri = null;
+
+			if (peek() == '{') {
+				int end = expression.indexOf('}', position);
+				if (end < 0) throw error("unterminated namespace URI");
+
+				namespaceUri = expression.substring(position + 1, end);
+				position = end + 1;
+			}
+
+			int start = position;
+			while (position < expression.length() && "/[]=@*{}'\"".indexOf(expression.charAt(position)) < 0) {
+				position++;
+			}
+
+			String name = expression.substring(start, position).trim();
+			if (name.isEmpty()) throw error("name expected");
+
+			int colon = name.indexOf(':');
+			if (colon >= 0) {
+				String prefix = name.substring(0, colon);
+				namespaceUri = namespaces.get(prefix);
+				if (namespaceUri == null) throw error("unknown namespace prefix '" + prefix + "'");
+
+				name = name.substring(colon + 1);
+			}
+
+			return new String[] { namespaceUri, name };
+		}
+
+		private String parseQuoted() {
+			char quote = peek();
+			if (quote != '\'' && quote != '"') throw error("quoted value expected");
+
+			int end = expression.indexOf(quote, position + 1);
+			if (end < 0) throw error("unterminated value");
+
+			String value = expression.substring(position + 1, end);
+			position = end + 1;
+
+			return value;
+		}
+
+		private char peek() {
+			return position < expression.length() ? expression.charAt(position) : 0;
+		}
+
+		private void expect(char c) {
+			if (peek() != c) throw error("'" + c + "' expected");
+
+			position++;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException("invalid selector '" + expression + "' at position " + position + ": " + message);
+		}
+	}
+}
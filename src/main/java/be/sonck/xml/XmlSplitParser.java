@@ -0,0 +1,572 @@
+package be.sonck.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Parses a file that consists of one root element holding a long list of sibling records on several
+ * threads.  The file is cut into chunks at the start tags of records, every chunk is parsed by its own
+ * {@link XmlElementHandler} inside a copy of the root start tag, and the converted records are passed to
+ * the listener in document order on the calling thread.  The converter therefore has to be thread safe.
+ *
+ * A cut is only known to be safe once the chunk before it has parsed as well formed content.  A chunk
+ * that does not, because the cut ended up inside a comment, a CDATA section or a nested record, makes the
+ * parser parse ever larger ranges from the start of that chunk on the calling thread, each one twice the
+ * size of the previous one, until a range is well formed.  It then continues with parallel chunks after
+ * that range.  The result is always the same as that of a sequential parse.  Files with a document type
+ * declaration, files in an encoding that is not ASCII compatible and files whose root element cannot be
+ * found are parsed sequentially as a whole.
+ *
+ * Every delivered element can be followed by an {@link XmlCheckpoint}: the start of the chunk or range
+ * that holds it and the number of elements delivered from there.  A parse that failed halfway can be
+ * resumed from the last one without reading anything before that offset again.  A file that is parsed
+ * sequentially as a whole only has offset 0: resuming it reads the whole file again and only saves the
+ * conversion and delivery of the elements that were delivered before.
+ *
+ * @author Johan Sonck
+ */
+public class XmlSplitParser<T> {
+
+	public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+	private Logger logger = Logger.getLogger(XmlSplitParser.class);
+
+	private final String recordName;
+	private final XmlElementToObjectConverter<T> converter;
+	private final Executor executor;
+	private final int maxInFlight;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private XmlCheckpointListener checkpointListener;
+	private final AtomicLong bytesParsed = new AtomicLong();
+
+	/**
+	 * @param recordName the name of the records below the root element
+	 * @param maxInFlight the maximum number of chunks that are parsed or waiting to be delivered at any time
+	 */
+	public XmlSplitParser(String recordName, XmlElementToObjectConverter<T> converter, Executor executor,
+			int maxInFlight) {
+
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1 (" + maxInFlight + ")");
+
+		this.recordName = recordName;
+		this.converter = converter;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * @param chunkSize the approximate number of bytes in a chunk, {@link #DEFAULT_CHUNK_SIZE} by default
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param checkpointListener receives a checkpoint after every element the listener has accepted, from
+	 * which {@link #resume(Path, XmlCheckpoint, XmlHandlerListener)} can continue
+	 */
+	public void setCheckpointListener(XmlCheckpointListener checkpointListener) {
+		this.checkpointListener = checkpointListener;
+	}
+
+	public void parse(Path path, XmlHandlerListener<T> listener) {
+		resume(path, XmlCheckpoint.START, listener);
+	}
+
+	/**
+	 * Parses the file from the given checkpoint on, typically the last one received from an earlier parse of
+	 * the same file that failed.  The elements delivered before the checkpoint are not delivered again, and
+	 * for a file that can be split the part before its byte offset is not even read.  For a file that is
+	 * parsed sequentially as a whole, only the conversion and delivery of those elements is saved.
+	 */
+	public void resume(Path path, XmlCheckpoint checkpoint, XmlHandlerListener<T> listener) {
+		try {
+			Layout layout = Layout.of(path, recordName);
+			Delivery delivery = new Delivery(listener, checkpoint);
+
+			listener.start();
+
+			if (layout == null) {
+				if (checkpoint.getByteOffset() != 0) {
+					throw new IllegalArgumentException("checkpoint " + checkpoint + " does not belong to " + path);
+				}
+
+				logger.debug("parsing " + path + " sequentially");
+				XmlElementHandler<T> handler = newHandler(new ElementsOnly<T>(delivery::deliver));
+				handler.setElementsToSkip(checkpoint.getElementsAfterOffset());
+				XmlFiles.parse(path, handler);
+				bytesParsed.addAndGet(Files.size(path));
+
+			} else {
+				long start = checkpoint.getByteOffset() == 0 ? layout.contentStart : checkpoint.getByteOffset();
+				while (start < layout.contentEnd) {
+					long notFlat = parseChunks(path, layout, layout.split(path, start, chunkSize), delivery);
+					if (notFlat < 0) break;
+
+					start = parseGrowingRange(path, layout, notFlat, delivery);
+				}
+			}
+
+			listener.end();
+
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Parses the chunks between the boundaries in parallel.  The elements of the first chunk that were
+	 * delivered before, according to the checkpoint the delivery started from, are skipped.
+	 * @return the start of the first chunk that is not well formed, or -1 when all of them are
+	 */
+	private long parseChunks(Path path, Layout layout, long[] boundaries, Delivery delivery) {
+		Queue<Future<List<T>>> pending = new ArrayDeque<Future<List<T>>>();
+		long elementsToSkip = delivery.elementsDeliveredFrom(boundaries[0]);
+		int next = 0;
+
+		while (next < boundaries.length - 1 || !pending.isEmpty()) {
+			while (next < boundaries.length - 1 && pending.size() < maxInFlight) {
+				pending.add(submit(path, layout, boundaries[next], boundaries[next + 1], next == 0 ? elementsToSkip : 0));
+				next++;
+			}
+
+			int chunk = next - pending.size();
+			List<T> elements = get(pending.poll());
+
+			if (elements == null) {
+				for (Future<List<T>> future : pending) {
+					future.cancel(true);
+				}
+
+				logger.debug("chunk at offset " + boundaries[chunk] + " of " + path + " is not flat");
+				return boundaries[chunk];
+			}
+
+			delivery.moveTo(boundaries[chunk]);
+			for (T element : elements) {
+				delivery.deliver(element);
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Parses ranges that start at the given offset and double in size until one of them is well formed,
+	 * and delivers its elements.  The range that reaches the end of the content is parsed as the rest of
+	 * the document, so a real syntax error is thrown from there.
+	 * @return the end of the range that was delivered
+	 */
+	private long parseGrowingRange(Path path, Layout layout, long start, Delivery delivery) throws IOException {
+		long elementsToSkip = delivery.elementsDeliveredFrom(start);
+		long length = 2L * chunkSize;
+
+		while (true) {
+			long end = layout.nextBoundary(path, start + length);
+			if (end >= layout.contentEnd) {
+				delivery.moveTo(start);
+				parseRange(path, layout, start, Long.MAX_VALUE, elementsToSkip, new ElementsOnly<T>(delivery::deliver), false);
+				return layout.contentEnd;
+			}
+
+			List<T> elements = new ArrayList<T>();
+			if (parseRange(path, layout, start, end, elementsToSkip, new ElementsOnly<T>(elements::add), true)) {
+				delivery.moveTo(start);
+				for (T element : elements) {
+					delivery.deliver(element);
+				}
+
+				return end;
+			}
+
+			length *= 2;
+		}
+	}
+
+	private Future<List<T>> submit(final Path path, final Layout layout, final long start, final long end,
+			final long elementsToSkip) {
+
+		FutureTask<List<T>> task = new FutureTask<List<T>>(() -> {
+			List<T> elements = new ArrayList<T>();
+			boolean isFlat = parseRange(path, layout, start, end, elementsToSkip, new ElementsOnly<T>(elements::add), true);
+
+			return isFlat ? elements : null;
+		});
+
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Parses the bytes between start and end inside the root start tag.
+	 * @param isChunk true when the range has to be closed with the root end tag
+	 * @return false when the range is not well formed
+	 */
+	private boolean parseRange(Path path, Layout layout, long start, long end, long elementsToSkip,
+			XmlHandlerListener<T> listener, boolean isChunk) {
+
+		MappedFileInputStream content = null;
+		try {
+			content = new MappedFileInputStream(path, start, end);
+			InputStream inputStream = new SequenceInputStream(new ByteArrayInputStream(layout.rootStartTag),
+					isChunk ? new SequenceInputStream(content, new ByteArrayInputStream(layout.rootEndTag)) : content);
+
+			InputSource inputSource = new InputSource(inputStream);
+			inputSource.setEncoding(layout.encoding);
+
+			XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+			XmlElementHandler<T> handler = newHandler(listener);
+			handler.setElementsToSkip(elementsToSkip);
+			xmlReader.setContentHandler(handler);
+			// A chunk that is not well formed is expected now and then, it should not end up on the console.
+			if (isChunk) xmlReader.setErrorHandler(new DefaultHandler());
+			xmlReader.parse(inputSource);
+
+			return true;
+
+		} catch (SAXParseException e) {
+			if (!isChunk) throw new RuntimeException(e);
+
+			return false;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			if (content != null) {
+				bytesParsed.addAndGet(content.position() - start);
+				closeQuietly(content);
+			}
+		}
+	}
+
+	private static void closeQuietly(InputStream inputStream) {
+		try {
+			inputStream.close();
+		} catch (IOException e) {
+			// nothing was written, so nothing is lost
+		}
+	}
+
+	/**
+	 * @return the number of bytes of the file that this parser has parsed so far, including the ranges it
+	 * parsed more than once
+	 */
+	long getBytesParsed() {
+		return bytesParsed.get();
+	}
+
+	private XmlElementHandler<T> newHandler(XmlHandlerListener<T> listener) {
+		return new XmlElementHandler<T>(Collections.singletonList(recordName), listener, converter);
+	}
+
+	private List<T> get(Future<List<T>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Passes the elements on to the listener and keeps track of the checkpoint after each of them.
+	 */
+	private final class Delivery {
+		private final XmlHandlerListener<T> listener;
+		private long byteOffset;
+		private long elementCount;
+		private long elementsAfterOffset;
+
+		private Delivery(XmlHandlerListener<T> listener, XmlCheckpoint checkpoint) {
+			this.listener = listener;
+			this.byteOffset = checkpoint.getByteOffset();
+			this.elementCount = checkpoint.getElementCount();
+			this.elementsAfterOffset = checkpoint.getElementsAfterOffset();
+		}
+
+		/**
+		 * @return the number of elements starting at the given offset that have been delivered already
+		 */
+		private long elementsDeliveredFrom(long byteOffset) {
+			return byteOffset == this.byteOffset ? elementsAfterOffset : 0;
+		}
+
+		/**
+		 * @param byteOffset the start of the range whose elements are delivered next
+		 */
+		private void moveTo(long byteOffset) {
+			if (byteOffset == this.byteOffset) return;
+
+			this.byteOffset = byteOffset;
+			this.elementsAfterOffset = 0;
+		}
+
+		private void deliver(T element) {
+			listener.newElement(element);
+
+			elementCount++;
+			elementsAfterOffset++;
+			if (checkpointListener != null) {
+				checkpointListener.checkpoint(new XmlCheckpoint(byteOffset, elementCount, elementsAfterOffset));
+			}
+		}
+	}
+
+	/**
+	 * Only passes the elements on, the start and end of a range are not those of the document.
+	 */
+	private static final class ElementsOnly<T> implements XmlHandlerListener<T> {
+		private final Consumer<T> consumer;
+
+		private ElementsOnly(Consumer<T> consumer) {
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+		@Override
+		public void newElement(T element) {
+			consumer.accept(element);
+		}
+	}
+
+	/**
+	 * The positions in the file that the chunks are cut from.
+	 */
+	private static final class Layout {
+		private static final String MARKUP_CHARS = "<>/?!=\"' \t\r\n";
+		private static final byte[] MARKUP = MARKUP_CHARS.getBytes(StandardCharsets.US_ASCII);
+
+		private final String encoding;
+		private final byte[] rootStartTag;
+		private final byte[] rootEndTag;
+		private final byte[] recordStart;
+		private final long contentStart;
+		private final long contentEnd;
+
+		private Layout(String encoding, byte[] rootStartTag, byte[] rootEndTag, byte[] recordStart,
+				long contentStart, long contentEnd) {
+
+			this.encoding = encoding;
+			this.rootStartTag = rootStartTag;
+			this.rootEndTag = rootEndTag;
+			this.recordStart = recordStart;
+			this.contentStart = contentStart;
+			this.contentEnd = contentEnd;
+		}
+
+		/**
+		 * @return the layout of the file, or null when it cannot be split
+		 */
+		private static Layout of(Path path, String recordName) throws IOException {
+			String encoding = XmlEncodingDetector.detect(path);
+			Charset charset = Charset.forName(encoding);
+			if (!Arrays.equals(MARKUP, MARKUP_CHARS.getBytes(charset))) return null;
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				byte[] head = read(channel, 0, SCAN_BUFFER_SIZE);
+
+				// Bytes outside the ASCII range only occur in names and values, so they can be read as ISO-8859-1.
+				String prolog = new String(head, StandardCharsets.ISO_8859_1);
+				int rootStart = findRootStart(prolog);
+				if (rootStart < 0) return null;
+
+				int rootEnd = findTagEnd(prolog, rootStart);
+				if (rootEnd < 0 || prolog.charAt(rootEnd - 1) == '/') return null;
+
+				int nameEnd = rootStart + 1;
+				while (MARKUP_CHARS.indexOf(prolog.charAt(nameEnd)) < 0) nameEnd++;
+				String rootName = prolog.substring(rootStart + 1, nameEnd);
+
+				byte[] rootEndTag = ("</" + rootName + ">").getBytes(StandardCharsets.ISO_8859_1);
+				long contentEnd = lastIndexOf(channel, Arrays.copyOf(rootEndTag, rootEndTag.length - 1));
+				if (contentEnd <= rootEnd) return null;
+
+				return new Layout(encoding, Arrays.copyOfRange(head, rootStart, rootEnd + 1), rootEndTag,
+						("<" + recordName).getBytes(charset), rootEnd + 1, contentEnd);
+			}
+		}
+
+		/**
+		 * @return the boundaries of the chunks: the start, the start tags of records roughly chunkSize bytes
+		 * apart, and the content end
+		 */
+		private long[] split(Path path, long start, int chunkSize) throws IOException {
+			List<Long> boundaries = new ArrayList<Long>();
+			boundaries.add(start);
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long target = start + chunkSize;
+				while (target < contentEnd) {
+					long boundary = findRecordStart(channel, target);
+					if (boundary < 0) break;
+
+					boundaries.add(boundary);
+					target = boundary + chunkSize;
+				}
+			}
+
+			boundaries.add(contentEnd);
+
+			long[] result = new long[boundaries.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = boundaries.get(i);
+			}
+
+			return result;
+		}
+
+		/**
+		 * @return the start of the first record at or after the given offset, or the content end
+		 */
+		private long nextBoundary(Path path, long from) throws IOException {
+			if (from >= contentEnd) return contentEnd;
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long boundary = findRecordStart(channel, from);
+				return boundary < 0 ? contentEnd : boundary;
+			}
+		}
+
+		private long findRecordStart(FileChannel channel, long from) throws IOException {
+			long position = from;
+			while (position < contentEnd) {
+				byte[] buffer = read(channel, position, SCAN_BUFFER_SIZE);
+				int searchable = buffer.length - recordStart.length;
+				if (searchable <= 0) return -1;
+
+				for (int i = 0; i < searchable; i++) {
+					if (position + i >= contentEnd) return -1;
+					if (startsWith(buffer, i, recordStart) && isNameEnd(buffer[i + recordStart.length])) return position + i;
+				}
+
+				position += searchable;
+			}
+
+			return -1;
+		}
+
+		private static boolean isNameEnd(byte b) {
+			return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+		}
+
+		/**
+		 * @return the position of the root start tag, or -1 when the prolog holds a document type declaration
+		 */
+		private static int findRootStart(String prolog) {
+			int position = prolog.startsWith("\u00ef\u00bb\u00bf") ? 3 : 0;
+
+			while (position < prolog.length()) {
+				char c = prolog.charAt(position);
+				if (Character.isWhitespace(c)) {
+					position++;
+				} else if (prolog.startsWith("<?", position)) {
+					position = skipPast(prolog, position, "?>");
+				} else if (prolog.startsWith("<!--", position)) {
+					position = skipPast(prolog, position, "-->");
+				} else if (c == '<' && position + 1 < prolog.length() && prolog.charAt(position + 1) != '!') {
+					return position;
+				} else {
+					return -1;
+				}
+
+				if (position < 0) return -1;
+			}
+
+			return -1;
+		}
+
+		private static int skipPast(String text, int from, String end) {
+			int index = text.indexOf(end, from);
+			return index < 0 ? -1 : index + end.length();
+		}
+
+		private static int findTagEnd(String text, int from) {
+			char quote = 0;
+			for (int i = from; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (quote != 0) {
+					if (c == quote) quote = 0;
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '>') {
+					return i;
+				}
+			}
+
+			return -1;
+		}
+
+		private static long lastIndexOf(FileChannel channel, byte[] pattern) throws IOException {
+			long size = channel.size();
+			long start = Math.max(0, size - SCAN_BUFFER_SIZE);
+			byte[] tail = read(channel, start, (int) (size - start));
+
+			for (int i = tail.length - pattern.length; i >= 0; i--) {
+				if (startsWith(tail, i, pattern)) return start + i;
+			}
+
+			return -1;
+		}
+
+		private static boolean startsWith(byte[] buffer, int offset, byte[] prefix) {
+			if (offset + prefix.length > buffer.length) return false;
+
+			for (int i = 0; i < prefix.length; i++) {
+				if (buffer[offset + i] != prefix[i]) return false;
+			}
+
+			return true;
+		}
+
+		private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, Math.max(0, channel.size() - position)));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) break;
+			}
+
+			return Arrays.copyOf(buffer.array(), buffer.position());
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package be.sonck.xml;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Exposes the top elements of a document as a {@link Stream}.
+ *
+ * @author Johan Sonck
+ */
+public final class XmlStreams {
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private XmlStreams() {
+    }
+
+    /**
+     * @see #elements(InputSource, List, XmlElementToObjectConverter, int)
+     */
+    public static <T> Stream<T> elements(InputSource inputSource, List<String> topElementsToParse,
+                                         XmlElementToObjectConverter<T> converter) {
+        return elements(inputSource, topElementsToParse, converter, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Returns a lazily parsed Stream of the converted top elements in document order. Parsing starts on a
+     * separate daemon thread when the Stream is first traversed. Elements are handed over in batches of
+     * batchSize, which are also the units a parallel Stream splits into. The parser thread only builds the
+     * {@link XmlElement}s; the converter runs in the Stream itself, so a parallel Stream converts on the
+     * common pool.
+     *
+     * Closing the Stream stops the parser and releases its thread. A parse error is rethrown as a
+     * RuntimeException on the consuming thread.
+     *
+     * @param inputSource        the document to parse
+     * @param topElementsToParse the names of the elements to convert
+     * @param converter          converts each top element
+     * @param batchSize          the number of elements handed over at once
+     * @return Stream
+     */
+    public static <T> Stream<T> elements(InputSource inputSource, List<String> topElementsToParse,
+                                         XmlElementToObjectConverter<T> converter, int batchSize) {
+
+        ParserTask task = new ParserTask(inputSource, topElementsToParse, batchSize);
+
+        return StreamSupport.stream(task::start, Spliterator.ORDERED, false)
+                .onClose(task::cancel)
+                .map(converter::convert);
+    }
+
+    private static final class ParserTask implements Runnable {
+        private final InputSource inputSource;
+        private final List<String> topElementsToParse;
+        private final BlockingQueueXmlHandlerIterator<List<XmlElement>> queue =
+                new BlockingQueueXmlHandlerIterator<>(DEFAULT_QUEUE_CAPACITY);
+        private final BatchingXmlHandlerListener<XmlElement> listener;
+        private Thread thread;
+
+        private ParserTask(InputSource inputSource, List<String> topElementsToParse, int batchSize) {
+            this.inputSource = inputSource;
+            this.topElementsToParse = topElementsToParse;
+            this.listener = new BatchingXmlHandlerListener<>(queue, batchSize);
+        }
+
+        private synchronized Spliterator<XmlElement> start() {
+            if (thread == null && !queue.isCancelled()) {
+                thread = new Thread(this, "xml-stream-parser");
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            return new BatchSpliterator<>(queue);
+        }
+
+        private synchronized void cancel() {
+            queue.cancel();
+
+            if (thread != null) thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+                XmlElementHandler<XmlElement> handler = new XmlElementHandler<>(topElementsToParse, listener,
+                        XmlElementToObjectConverter.identity());
+                xmlReader.setContentHandler(handler);
+                xmlReader.setErrorHandler(handler);
+                xmlReader.parse(inputSource);
+
+            } catch (CancellationException e) {
+                // the consumer closed the stream
+            } catch (Throwable e) {
+                // Errors are passed on as well, otherwise the consumer would wait for the end forever.
+                if (queue.isCancelled()) return;
+
+                listener.flush();
+                queue.fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package be.sonck.xml;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonicalizes tag and attribute names, so that all {@link XmlElement} objects built from a document share
+ * a single String instance per distinct name.  A table can be shared between parses, also on different
+ * threads.  Once it holds maxSize names, new names are returned as they are, which protects the heap against
+ * documents with an unbounded number of distinct names.
+ *
+ * @author Johan Sonck
+ */
+public class XmlSymbolTable {
+
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/**
+	 * Keeps no names, every name is returned as it is.
+	 */
+	public static final XmlSymbolTable NONE = new XmlSymbolTable(0);
+
+	private final ConcurrentMap<String, String> symbols = new ConcurrentHashMap<String, String>();
+	private final int maxSize;
+
+	public XmlSymbolTable() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public XmlSymbolTable(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param name String
+	 * @return the canonical instance of the given name
+	 */
+	public String canonicalize(String name) {
+		if (name == null) return null;
+
+		String symbol = symbols.get(name);
+		if (symbol != null) return symbol;
+
+		if (symbols.size() >= maxSize) return name;
+
+		symbol = symbols.putIfAbsent(name, name);
+		return symbol == null ? name : symbol;
+	}
+
+	public int size() {
+		return symbols.size();
+	}
+}
@@ -1,33 +1,72 @@
 package be.sonck.xml;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
 
 
 public class XmlValidator {
 
 	private class ErrorHandler extends DefaultHandler {
+		private final int maxErrors;
+		private final List<ValidationError> errors;
+		private int errorCount;
+		private boolean aborted;
 		private boolean validationError = false;
 		private SAXParseException saxParseException = null;
 
+		/**
+		 * @param maxErrors the number of errors after which validation is aborted
+		 * @param collect whether the errors should be kept for a {@link ValidationReport}
+		 */
+		private ErrorHandler(int maxErrors, boolean collect) {
+			this.maxErrors = maxErrors;
+			this.errors = collect ? new ArrayList<ValidationError>() : null;
+		}
+
 		public void error(SAXParseException exception) throws SAXException {
-			validationError = true;
-			saxParseException = exception;
+			record(exception, false);
 		}
 
 		public void fatalError(SAXParseException exception) throws SAXException {
+			record(exception, true);
+		}
+
+		private void record(SAXParseException exception, boolean fatal) throws SAXException {
 			validationError = true;
 			saxParseException = exception;
+			if (errors != null) errors.add(ValidationError.of(exception, fatal));
+
+			// The parser never reads on after a fatal error, so the rest of the document is not checked.
+			if (fatal) aborted = true;
+
+			if (++errorCount >= maxErrors && !fatal) {
+				// Stop reading the document: the caller is not interested in any further errors.
+				aborted = true;
+				throw exception;
+			}
+		}
+
+		public ValidationReport getReport() {
+			return new ValidationReport(Collections.unmodifiableList(errors), aborted);
 		}
 
 		public void warning(SAXParseException exception) throws SAXException {
@@ -43,13 +82,153 @@ public class XmlValidator {
 	}
 
 
+	private static final SchemaCache SHARED_SCHEMA_CACHE = new SchemaCache();
+
+	public static final int DEFAULT_MAX_ERRORS = 100;
+
+	private final SchemaCache schemaCache;
+	private boolean failFast;
+	private int maxErrors = DEFAULT_MAX_ERRORS;
+
+	/**
+	 * Creates a validator that keeps its compiled schemas in a cache shared by all such validators.
+	 */
+	public XmlValidator() {
+		this(SHARED_SCHEMA_CACHE);
+	}
+
+	public XmlValidator(SchemaCache schemaCache) {
+		this.schemaCache = schemaCache;
+	}
+
+	/**
+	 * @param failFast true to abort validation at the first error instead of reading the rest of the document
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * @param maxErrors the maximum number of errors in a {@link ValidationReport}; validation is aborted when
+	 * it is reached
+	 */
+	public void setMaxErrors(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Validates the XML against the XSD and reports up to maxErrors errors, or only the first one in fail
+	 * fast mode, instead of throwing.  The XSD is identified by its content, which is read and hashed on
+	 * every call; pass a URL or a schema key when validating many documents against the same XSD.
+	 */
+	public ValidationReport validate(Reader xmlReader, Reader xsdReader) {
+		return validate(xmlReader, schemaCache.get(xsdReader));
+	}
+
+	public ValidationReport validate(Reader xmlReader, URL xsdResource) {
+		return validate(xmlReader, schemaCache.get(xsdResource));
+	}
+
+	public ValidationReport validate(Reader xmlReader, String schemaKey, Reader xsdReader) {
+		return validate(xmlReader, schemaCache.get(schemaKey, xsdReader));
+	}
+
+	/**
+	 * Validates the XML file against the XSD.  The file is read through a {@link MappedFileInputStream} and
+	 * decoded by the parser itself.
+	 */
+	public ValidationReport validate(Path xmlFile, URL xsdResource) {
+		try (InputStream inputStream = new MappedFileInputStream(xmlFile)) {
+			return validate(fileSource(xmlFile, inputStream), schemaCache.get(xsdResource));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Validates the XML file against the XSD.  The file is read through a {@link MappedFileInputStream} and
+	 * decoded by the parser itself.
+	 */
+	public void validateXml(Path xmlFile, URL xsdResource) {
+		try (InputStream inputStream = new MappedFileInputStream(xmlFile)) {
+			validateXml(fileSource(xmlFile, inputStream), schemaCache.get(xsdResource));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Validates the XML against the XSD.  The XSD is identified by its content, so it is only compiled the
+	 * first time it is seen.  It is still read and hashed on every call; pass a URL or a schema key when
+	 * validating many documents against the same XSD.
+	 */
 	public void validateXml(Reader xmlReader, Reader xsdReader) {
+		validateXml(xmlReader, schemaCache.get(xsdReader));
+	}
+
+	/**
+	 * Validates the XML against the XSD at the given URL, which is only compiled the first time it is used.
+	 */
+	public void validateXml(Reader xmlReader, URL xsdResource) {
+		validateXml(xmlReader, schemaCache.get(xsdResource));
+	}
+
+	/**
+	 * Validates the XML against the XSD cached under the given key.  The xsdReader is only read when the
+	 * key is not cached yet.
+	 */
+	public void validateXml(Reader xmlReader, String schemaKey, Reader xsdReader) {
+		validateXml(xmlReader, schemaCache.get(schemaKey, xsdReader));
+	}
+
+	/**
+	 * Validates the XML against the XSD while passing the same SAX events on to the given handler, typically
+	 * an {@link XmlElementHandler}, so the document is read and tokenized only once.  The handler receives
+	 * the events before the validation outcome is known; a validation error is thrown once the document has
+	 * been read, as a RuntimeException caused by a SAXParseException that holds the line and column.
+	 */
+	public void validateAndParse(InputSource xmlSource, Reader xsdReader, ContentHandler handler) {
+		validateAndParse(xmlSource, schemaCache.get(xsdReader), handler);
+	}
+
+	public void validateAndParse(InputSource xmlSource, URL xsdResource, ContentHandler handler) {
+		validateAndParse(xmlSource, schemaCache.get(xsdResource), handler);
+	}
+
+	public void validateAndParse(InputSource xmlSource, String schemaKey, Reader xsdReader, ContentHandler handler) {
+		validateAndParse(xmlSource, schemaCache.get(schemaKey, xsdReader), handler);
+	}
+
+	private void validateAndParse(InputSource xmlSource, SchemaCache.Entry schema, ContentHandler handler) {
 		try {
-			ErrorHandler errorHandler = new ErrorHandler();
+			ErrorHandler errorHandler = new ErrorHandler(failFast ? 1 : Integer.MAX_VALUE, false);
 
-			Validator validator = getSchema(xsdReader).newValidator();
-			validator.setErrorHandler(errorHandler);
-			validator.validate(new StreamSource(xmlReader));
+			ValidatorHandler validatorHandler = schema.getSchema().newValidatorHandler();
+			validatorHandler.setErrorHandler(errorHandler);
+			validatorHandler.setContentHandler(handler);
+
+			XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+			xmlReader.setContentHandler(validatorHandler);
+			xmlReader.setErrorHandler(errorHandler);
+			xmlReader.parse(xmlSource);
+
+			if (errorHandler.getSaxParseException() != null) throw errorHandler.getSaxParseException();
+
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void validateXml(Reader xmlReader, SchemaCache.Entry schema) {
+		validateXml(new StreamSource(xmlReader), schema);
+	}
+
+	private void validateXml(Source xmlSource, SchemaCache.Entry schema) {
+		try {
+			ErrorHandler errorHandler = new ErrorHandler(failFast ? 1 : Integer.MAX_VALUE, false);
+			run(xmlSource, schema, errorHandler);
 
 			if (errorHandler.getSaxParseException() != null) throw errorHandler.getSaxParseException();
 			
@@ -60,8 +239,40 @@ public class XmlValidator {
 		}
 	}
 
-	private Schema getSchema(Reader xsdReader) throws SAXException {
-		SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-		return factory.newSchema(new StreamSource(xsdReader));
+	private static Source fileSource(Path xmlFile, InputStream inputStream) {
+		return new StreamSource(inputStream, xmlFile.toUri().toString());
+	}
+
+	SchemaCache getSchemaCache() {
+		return schemaCache;
+	}
+
+	ValidationReport validate(Reader xmlReader, SchemaCache.Entry schema) {
+		return validate(new StreamSource(xmlReader), schema);
+	}
+
+	private ValidationReport validate(Source xmlSource, SchemaCache.Entry schema) {
+		ErrorHandler errorHandler = new ErrorHandler(failFast ? 1 : maxErrors, true);
+		try {
+			run(xmlSource, schema, errorHandler);
+		} catch (SAXParseException e) {
+			// Already recorded by the error handler.
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+
+		return errorHandler.getReport();
+	}
+
+	private void run(Source xmlSource, SchemaCache.Entry schema, ErrorHandler errorHandler) throws SAXException, IOException {
+		Validator validator = schema.acquire();
+		try {
+			validator.setErrorHandler(errorHandler);
+			validator.validate(xmlSource);
+		} finally {
+			schema.release(validator);
+		}
 	}
 }
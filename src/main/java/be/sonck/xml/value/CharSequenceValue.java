@@ -0,0 +1,78 @@
+package be.sonck.xml.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Text held as any CharSequence, for instance a {@link CharBuffer} slice of a buffer that is shared by many
+ * values.  Nothing is copied into a String: the characters are escaped straight into the output when the
+ * value is written.  The value reflects later changes to the sequence it wraps.
+ */
+@Getter
+@AllArgsConstructor
+public class CharSequenceValue extends XmlValue {
+
+    private final CharSequence value;
+
+    /**
+     * @return a value over the characters from offset up to offset + length, without copying them
+     */
+    public static CharSequenceValue slice(char[] buffer, int offset, int length) {
+        return new CharSequenceValue(CharBuffer.wrap(buffer, offset, length));
+    }
+
+    public String toString() {
+        StringBuilder builder = new StringBuilder(value.length());
+        try {
+            writeTo(builder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public int lengthHint() {
+        return value.length();
+    }
+
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        XmlEscaper.DEFAULT.escape(value, out);
+    }
+
+    /**
+     * Compares the characters, whatever the type of the sequences.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CharSequence that = ((CharSequenceValue) o).value;
+        if (value.length() != that.length()) return false;
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != that.charAt(i)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * The same hash as that of a String with these characters.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+
+        return hash;
+    }
+}
@@ -1,23 +1,88 @@
 package be.sonck.xml.value;
 
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
+import java.io.IOException;
 import java.util.List;
 
-import static java.util.stream.Collectors.joining;
-
 /**
  * Created by johansonck on 16/03/2017.
+ *
+ * The parts are rendered one after the other straight into the output.  A memoizing composite keeps its
+ * rendered form after the first {@link #toString()}, which pays off for a value that is written many
+ * times; it assumes that the list of parts is not changed afterwards.
  */
 @Value
+@EqualsAndHashCode(callSuper = false, exclude = {"memoizing", "lengthHint", "rendered"})
 public class CompositeXmlValue extends XmlValue {
 
     private List<XmlValue> values;
 
+    @Getter(AccessLevel.NONE)
+    private boolean memoizing;
+
+    @Getter(AccessLevel.NONE)
+    private int lengthHint;
+
+    @NonFinal
+    @Getter(AccessLevel.NONE)
+    private volatile String rendered;
+
+    public CompositeXmlValue(List<XmlValue> values) {
+        this(values, false);
+    }
+
+    /**
+     * @param memoizing true to keep the rendered form once it has been built
+     */
+    public CompositeXmlValue(List<XmlValue> values, boolean memoizing) {
+        this.values = values;
+        this.memoizing = memoizing;
+
+        int lengthHint = 0;
+        for (XmlValue value : values) {
+            lengthHint += value.lengthHint();
+        }
+        this.lengthHint = lengthHint;
+    }
+
     @Override
     public String toString() {
-        return values.stream()
-                .map(XmlValue::toString)
-                .collect(joining());
+        String result = rendered;
+        if (result != null) return result;
+
+        StringBuilder builder = new StringBuilder(lengthHint);
+        try {
+            writeTo(builder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        result = builder.toString();
+        if (memoizing) rendered = result;
+
+        return result;
+    }
+
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        String result = rendered;
+        if (result != null) {
+            out.append(result);
+            return;
+        }
+
+        for (XmlValue value : values) {
+            value.writeTo(out);
+        }
+    }
+
+    @Override
+    public int lengthHint() {
+        return lengthHint;
     }
 }
@@ -0,0 +1,174 @@
+package be.sonck.xml.value;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Text that is appended piece by piece and can grow beyond what should be kept on the heap, such as a
+ * base64 payload.  Up to the threshold the characters are kept in memory; beyond it they are moved to a
+ * temporary file.  Writing the value streams the characters through the escaper into the output in small
+ * chunks, so the whole escaped text never exists as a String.
+ *
+ * The parsers create such values for element text above their large text threshold, see
+ * {@link be.sonck.xml.XmlElementHandler#setLargeTextThreshold(int)}.
+ *
+ * Close the value to delete its temporary file; a file that is left behind is deleted when the JVM exits.
+ * Values are compared by identity, comparing their contents would mean reading their files.
+ */
+public class LargeTextValue extends XmlValue implements Appendable, Closeable {
+
+    public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final int threshold;
+    private StringBuilder buffer = new StringBuilder();
+    private Path file;
+    private Writer fileWriter;
+    private long length;
+
+    public LargeTextValue() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold the number of characters above which the text is moved to a temporary file
+     */
+    public LargeTextValue(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public LargeTextValue append(CharSequence text) throws IOException {
+        return append(text, 0, text.length());
+    }
+
+    @Override
+    public LargeTextValue append(CharSequence text, int start, int end) throws IOException {
+        if (file == null && buffer.length() + end - start > threshold) spill();
+
+        if (file == null) {
+            buffer.append(text, start, end);
+        } else {
+            fileWriter.append(text, start, end);
+        }
+
+        length += end - start;
+        return this;
+    }
+
+    @Override
+    public LargeTextValue append(char c) throws IOException {
+        return append(String.valueOf(c));
+    }
+
+    /**
+     * @return the number of characters in the unescaped text
+     */
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int lengthHint() {
+        return (int) Math.min(Integer.MAX_VALUE - 8, length);
+    }
+
+    /**
+     * @return true when the text has been moved to a temporary file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        if (file == null) {
+            XmlEscaper.DEFAULT.escape(buffer, out);
+            return;
+        }
+
+        fileWriter.flush();
+
+        char[] chunk = new char[CHUNK_SIZE];
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int count;
+            while ((count = reader.read(chunk)) > 0) {
+                XmlEscaper.DEFAULT.escape(CharBuffer.wrap(chunk), 0, count, out);
+            }
+        }
+    }
+
+    /**
+     * Materializes the unescaped text, reading it back from the temporary file when it was spilled.
+     */
+    public String getText() {
+        if (file == null) return buffer.toString();
+
+        StringBuilder builder = new StringBuilder(lengthHint());
+        char[] chunk = new char[CHUNK_SIZE];
+        try {
+            fileWriter.flush();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                int count;
+                while ((count = reader.read(chunk)) > 0) {
+                    builder.append(chunk, 0, count);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Materializes the escaped text; prefer {@link #writeTo(Appendable)} for text that was spilled.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(lengthHint());
+        try {
+            writeTo(builder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file == null) return;
+
+        fileWriter.close();
+        Files.deleteIfExists(file);
+        file = null;
+        buffer = new StringBuilder();
+        length = 0;
+    }
+
+    private void spill() throws IOException {
+        file = Files.createTempFile("xml-value", ".txt");
+        file.toFile().deleteOnExit();
+        fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        fileWriter.append(buffer);
+        buffer = null;
+    }
+}
@@ -2,7 +2,7 @@ package be.sonck.xml.value;
 
 import lombok.Value;
 
-import static org.apache.commons.lang3.StringUtils.replaceAll;
+import java.io.IOException;
 
 @Value
 public class StringValue extends XmlValue {
@@ -10,17 +10,16 @@ public class StringValue extends XmlValue {
     private String value;
 
     public String toString() {
-        String temporary = value;
+        return XmlEscaper.DEFAULT.escape(value);
+    }
 
-        temporary = replaceAll(temporary, "&", "&amp;");
-        temporary = replaceAll(temporary, ">", "&gt;");
-        temporary = replaceAll(temporary, "<", "&lt;");
-        temporary = replaceAll(temporary, "\"", "&quot;");
-        temporary = replaceAll(temporary, "'", "&#39;");
-        temporary = replaceAll(temporary, "¬", "&#172;");
-        //temporary = replace(temporary, "", "&#128;");
-        //temporary = replace(temporary, "\u20AC", "&#8364;");
+    @Override
+    public int lengthHint() {
+        return value == null ? 0 : value.length();
+    }
 
-        return temporary;
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        XmlEscaper.DEFAULT.escape(value, out);
     }
 }
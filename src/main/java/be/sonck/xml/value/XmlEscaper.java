@@ -0,0 +1,101 @@
+package be.sonck.xml.value;
+
+import java.io.IOException;
+
+/**
+ * Single-pass XML escaping. Each constant scans its input once and only allocates when at least one
+ * character needs to be replaced.
+ */
+public enum XmlEscaper {
+
+    /**
+     * Escapes the full entity set that {@link StringValue} has always produced:
+     * {@code &amp; &gt; &lt; &quot; &#39; &#172;}.
+     */
+    DEFAULT('&', "&amp;", '>', "&gt;", '<', "&lt;", '"', "&quot;", '\'', "&#39;", '\u00ac', "&#172;"),
+
+    /**
+     * Escapes what is needed inside element content. Quotes are left as they are.
+     */
+    TEXT('&', "&amp;", '>', "&gt;", '<', "&lt;", '\u00ac', "&#172;"),
+
+    /**
+     * Escapes what is needed inside a double or single quoted attribute value. Tabs and line breaks are
+     * written as character references so that they survive attribute value normalization.
+     */
+    ATTRIBUTE('&', "&amp;", '>', "&gt;", '<', "&lt;", '"', "&quot;", '\'', "&#39;", '\u00ac', "&#172;",
+            '\t', "&#9;", '\n', "&#10;", '\r', "&#13;");
+
+    private static final int TABLE_SIZE = 256;
+
+    private final String[] replacements = new String[TABLE_SIZE];
+
+    XmlEscaper(Object... mapping) {
+        for (int i = 0; i < mapping.length; i += 2) {
+            replacements[(Character) mapping[i]] = (String) mapping[i + 1];
+        }
+    }
+
+    /**
+     * @param value the String to escape, may be null
+     * @return the escaped String, or the given instance itself when nothing needs to be escaped
+     */
+    public String escape(String value) {
+        if (value == null) return null;
+
+        int first = indexOfEscapable(value, 0, value.length());
+        if (first < 0) return value;
+
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        builder.append(value, 0, first);
+        try {
+            escape(value, first, value.length(), builder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Escapes the given CharSequence straight into the Appendable.
+     *
+     * @param value CharSequence
+     * @param out   Appendable
+     * @throws IOException when the Appendable fails
+     */
+    public void escape(CharSequence value, Appendable out) throws IOException {
+        if (value == null) return;
+
+        escape(value, 0, value.length(), out);
+    }
+
+    /**
+     * Escapes the characters between start (inclusive) and end (exclusive) straight into the Appendable.
+     */
+    public void escape(CharSequence value, int start, int end, Appendable out) throws IOException {
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            String replacement = replacementFor(value.charAt(i));
+            if (replacement == null) continue;
+
+            if (i > runStart) out.append(value, runStart, i);
+            out.append(replacement);
+            runStart = i + 1;
+        }
+
+        if (end > runStart) out.append(value, runStart, end);
+    }
+
+    private int indexOfEscapable(CharSequence value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (replacementFor(value.charAt(i)) != null) return i;
+        }
+
+        return -1;
+    }
+
+    private String replacementFor(char c) {
+        return c < TABLE_SIZE ? replacements[c] : null;
+    }
+}
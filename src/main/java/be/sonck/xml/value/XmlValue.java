@@ -1,5 +1,6 @@
 package be.sonck.xml.value;
 
+import java.io.IOException;
 import java.util.Objects;
 
 /**
@@ -14,6 +15,24 @@ public abstract class XmlValue {
         }
     };
 
+    /**
+     * Writes the serialized form of this value to the given Appendable. Subclasses that can render
+     * without building the full String first should override this.
+     *
+     * @param out Appendable
+     * @throws IOException when the Appendable fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(toString());
+    }
+
+    /**
+     * @return an estimate of the number of characters in the serialized form, used to size buffers
+     */
+    public int lengthHint() {
+        return 16;
+    }
+
     @Override
     public int hashCode() {
         return toString().hashCode();
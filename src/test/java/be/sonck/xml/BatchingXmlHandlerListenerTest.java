@@ -0,0 +1,116 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchingXmlHandlerListenerTest {
+
+    @Test
+    public void deliversFullBatchesAndRemainderAtEnd() {
+        final List<List<Integer>> batches = new ArrayList<>();
+        BatchingXmlHandlerListener<Integer> listener = new BatchingXmlHandlerListener<>(collectingListener(batches), 3);
+
+        listener.start();
+        for (int i = 0; i < 7; i++) {
+            listener.newElement(i);
+        }
+        assertThat(batches).hasSize(2);
+
+        listener.end();
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(2)).containsExactly(6);
+    }
+
+    @Test
+    public void flushesAnOverdueBatchDuringARegionWithoutElements() throws Exception {
+        final List<List<XmlElement>> batches = new ArrayList<>();
+        BatchingXmlHandlerListener<XmlElement> listener = new BatchingXmlHandlerListener<>(
+                collectingListener(batches), 100, 10, TimeUnit.MILLISECONDS);
+        XmlElementHandler<XmlElement> handler = new XmlElementHandler<>(Collections.singletonList("item"),
+                listener, XmlElementToObjectConverter.identity());
+
+        handler.startDocument();
+        handler.startElement("", "root", "root", null);
+        handler.startElement("", "item", "item", null);
+        handler.endElement("", "item", "item");
+        assertThat(batches).isEmpty();
+
+        Thread.sleep(20);
+        char[] text = "ignored".toCharArray();
+        for (int i = 0; i < 1000; i++) {
+            handler.startElement("", "other", "other", null);
+            handler.characters(text, 0, text.length);
+            handler.endElement("", "other", "other");
+        }
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).hasSize(1);
+
+        handler.endElement("", "root", "root");
+        handler.endDocument();
+        assertThat(batches).hasSize(1);
+    }
+
+    @Test
+    public void drainsBatchesThroughIteratorAndParallelStream() throws Exception {
+        final BlockingQueueXmlHandlerIterator<List<Integer>> queue = new BlockingQueueXmlHandlerIterator<>(4);
+        final BatchingXmlHandlerListener<Integer> listener = new BatchingXmlHandlerListener<>(queue, 10);
+
+        Thread producer = new Thread(() -> {
+            listener.start();
+            for (int i = 0; i < 1000; i++) {
+                listener.newElement(i);
+            }
+            listener.end();
+        });
+        producer.start();
+
+        List<Integer> result = StreamSupport.stream(new BatchSpliterator<>(queue), true)
+                .map(i -> i * 2)
+                .collect(Collectors.toList());
+        producer.join();
+
+        assertThat(result).hasSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(result.get(i)).isEqualTo(i * 2);
+        }
+    }
+
+    @Test
+    public void flattensBatchesIntoIterator() {
+        List<List<String>> batches = new ArrayList<>();
+        batches.add(Arrays.asList("a", "b"));
+        batches.add(new ArrayList<String>());
+        batches.add(Arrays.asList("c"));
+
+        Iterator<String> iterator = BatchSpliterator.iterator(batches.iterator());
+        List<String> result = new ArrayList<>();
+        iterator.forEachRemaining(result::add);
+
+        assertThat(result).containsExactly("a", "b", "c");
+    }
+
+    private static <T> XmlHandlerListener<List<T>> collectingListener(final List<List<T>> batches) {
+        return new XmlHandlerListener<List<T>>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(List<T> element) {
+                batches.add(element);
+            }
+        };
+    }
+}
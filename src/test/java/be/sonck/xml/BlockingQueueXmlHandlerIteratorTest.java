@@ -0,0 +1,66 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BlockingQueueXmlHandlerIteratorTest {
+
+    @Test
+    public void handsOverAllElementsAndStopsAtEnd() throws Exception {
+        final BlockingQueueXmlHandlerIterator<Integer> iterator = new BlockingQueueXmlHandlerIterator<>(2);
+
+        Thread producer = new Thread(() -> {
+            iterator.start();
+            for (int i = 0; i < 10; i++) {
+                iterator.newElement(i);
+            }
+            iterator.end();
+        });
+        producer.start();
+
+        List<Integer> elements = new ArrayList<>();
+        while (iterator.hasNext()) {
+            elements.add(iterator.next());
+        }
+        producer.join();
+
+        assertThat(elements).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(iterator.hasNext()).isFalse();
+    }
+
+    @Test
+    public void propagatesParserFailure() {
+        BlockingQueueXmlHandlerIterator<Integer> iterator = new BlockingQueueXmlHandlerIterator<>(2);
+        iterator.newElement(1);
+        iterator.fail(new IllegalStateException("broken"));
+
+        assertThat(iterator.next()).isEqualTo(1);
+        try {
+            iterator.hasNext();
+            fail("expected the parser failure");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("broken");
+        }
+    }
+
+    @Test
+    public void cancelEndsIterationAndStopsProducer() {
+        BlockingQueueXmlHandlerIterator<Integer> iterator = new BlockingQueueXmlHandlerIterator<>(2);
+        iterator.newElement(1);
+        iterator.cancel();
+
+        assertThat(iterator.hasNext()).isFalse();
+        try {
+            iterator.newElement(2);
+            fail("expected a CancellationException");
+        } catch (CancellationException e) {
+            assertThat(iterator.isCancelled()).isTrue();
+        }
+    }
+}
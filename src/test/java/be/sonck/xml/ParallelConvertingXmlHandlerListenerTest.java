@@ -0,0 +1,135 @@
+package be.sonck.xml;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class ParallelConvertingXmlHandlerListenerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void deliversInDocumentOrder() throws Exception {
+        List<Integer> result = parse(true);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expected.add(i);
+        }
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    public void deliversAllElementsUnordered() throws Exception {
+        List<Integer> result = parse(false);
+
+        Collections.sort(result);
+        assertThat(result).hasSize(50);
+        assertThat(result.get(0)).isEqualTo(0);
+        assertThat(result.get(49)).isEqualTo(49);
+    }
+
+    @Test
+    public void endsAfterARejectedElement() {
+        final List<String> result = new ArrayList<>();
+        XmlHandlerListener<String> target = new XmlHandlerListener<String>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(String element) {
+                result.add(element);
+            }
+        };
+
+        final int[] executed = new int[1];
+        Executor rejectingSecond = task -> {
+            if (++executed[0] == 2) throw new RejectedExecutionException("full");
+            task.run();
+        };
+
+        ParallelConvertingXmlHandlerListener<String> listener =
+                new ParallelConvertingXmlHandlerListener<>(target, XmlElement::getTag, rejectingSecond, 8, true);
+
+        listener.start();
+        listener.newElement(new XmlElement("first"));
+        try {
+            listener.newElement(new XmlElement("second"));
+            fail("expected the second element to be rejected");
+        } catch (RejectedExecutionException e) {
+            // the rejected element is not waited for
+        }
+        listener.newElement(new XmlElement("third"));
+        listener.end();
+
+        assertThat(result).containsExactly("first", "third");
+    }
+
+    private List<Integer> parse(boolean ordered) throws Exception {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < 50; i++) {
+            xml.append("<record><id>").append(i).append("</id></record>");
+        }
+        xml.append("</root>");
+
+        final List<Integer> result = new ArrayList<>();
+        final boolean[] ended = new boolean[1];
+        XmlHandlerListener<Integer> target = new XmlHandlerListener<Integer>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {
+                ended[0] = true;
+            }
+
+            @Override
+            public void newElement(Integer element) {
+                result.add(element);
+            }
+        };
+
+        XmlElementToObjectConverter<Integer> slowConverter = element -> {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Integer.valueOf(element.getChildren().get(0).getValue().toString());
+        };
+
+        ParallelConvertingXmlHandlerListener<Integer> listener =
+                new ParallelConvertingXmlHandlerListener<>(target, slowConverter, executor, 8, ordered);
+
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+        xmlReader.setContentHandler(new XmlElementHandler<>(Collections.singletonList("record"), listener,
+                XmlElementToObjectConverter.identity()));
+        xmlReader.parse(new InputSource(new StringReader(xml.toString())));
+
+        assertThat(ended[0]).isTrue();
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package be.sonck.xml;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlBatchValidatorTest {
+
+    private static final String XSD = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+            "<xs:element name='person'><xs:complexType><xs:sequence>" +
+            "<xs:element name='age' type='xs:int'/>" +
+            "</xs:sequence></xs:complexType></xs:element>" +
+            "</xs:schema>";
+
+    private static final String VALID_XML = "<person><age>44</age></person>";
+    private static final String INVALID_XML = "<person><age>old</age></person>";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void validatesAllDocumentsInOrder() {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            documents.add(i % 10 == 0 ? INVALID_XML : VALID_XML);
+        }
+        documents.add(null);
+
+        XmlBatchValidator batchValidator = new XmlBatchValidator(new XmlValidator(new SchemaCache()), executor, 8);
+        BatchValidationResult<String> result = batchValidator.validate(documents.stream(), document -> {
+            if (document == null) throw new FileNotFoundException("missing");
+            return new StringReader(document);
+        }, "person", new StringReader(XSD));
+
+        assertThat(result.getDocumentCount()).isEqualTo(201);
+        assertThat(result.getValidCount()).isEqualTo(180);
+        assertThat(result.getInvalidCount()).isEqualTo(20);
+        assertThat(result.getFailedCount()).isEqualTo(1);
+        assertThat(result.getResults().get(10).isValid()).isFalse();
+        assertThat(result.getResults().get(11).isValid()).isTrue();
+        assertThat(result.getResults().get(200).getFailure()).isInstanceOf(FileNotFoundException.class);
+        assertThat(result.getDocumentsPerSecond()).isGreaterThan(0);
+    }
+
+    @Test
+    public void reportsRejectedDocumentsAndKeepsGoing() {
+        final int[] submitted = new int[1];
+        Executor rejectingEverySecond = task -> {
+            if (++submitted[0] % 2 == 0) throw new RejectedExecutionException("busy");
+            task.run();
+        };
+
+        XmlBatchValidator batchValidator =
+                new XmlBatchValidator(new XmlValidator(new SchemaCache()), rejectingEverySecond, 1);
+        BatchValidationResult<String> result = batchValidator.validate(
+                Stream.of(VALID_XML, VALID_XML, VALID_XML),
+                StringReader::new, "person", new StringReader(XSD));
+
+        assertThat(result.getDocumentCount()).isEqualTo(3);
+        assertThat(result.getValidCount()).isEqualTo(2);
+        assertThat(result.getFailedCount()).isEqualTo(1);
+        assertThat(result.getResults().get(1).getFailure()).isInstanceOf(RejectedExecutionException.class);
+    }
+}
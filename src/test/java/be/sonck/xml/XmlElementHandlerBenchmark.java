@@ -0,0 +1,113 @@
+package be.sonck.xml;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.Reader;
+import java.util.Collections;
+
+/**
+ * Measures the throughput of {@link XmlElementHandler} on a generated document in which only one record in
+ * a hundred is requested.  Not run as part of the build; start it with the document size in megabytes as
+ * argument (default 1024).
+ */
+public class XmlElementHandlerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+        long size = megabytes * 1024 * 1024;
+        Logger.getRootLogger().setLevel(Level.INFO);
+
+        for (int run = 1; run <= 3; run++) {
+            final long[] matched = new long[1];
+            XmlHandlerListener<XmlElement> listener = new XmlHandlerListener<XmlElement>() {
+                @Override
+                public void start() {}
+
+                @Override
+                public void end() {}
+
+                @Override
+                public void newElement(XmlElement element) {
+                    matched[0]++;
+                }
+            };
+
+            XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+            xmlReader.setContentHandler(new XmlElementHandler<>(Collections.singletonList("target"), listener,
+                    XmlElementToObjectConverter.identity()));
+
+            long start = System.nanoTime();
+            xmlReader.parse(new InputSource(new GeneratedDocumentReader(size)));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("run %d: %d MB in %.2f s, %.1f MB/s, %d elements matched%n",
+                    run, megabytes, seconds, megabytes / seconds, matched[0]);
+        }
+    }
+
+    /**
+     * Produces a flat document of roughly the requested size without holding it in memory.
+     */
+    static class GeneratedDocumentReader extends Reader {
+        private static final String HEADER = "<root>";
+        private static final String FOOTER = "</root>";
+
+        private final long size;
+        private long written;
+        private long recordCount;
+        private String pending = HEADER;
+        private int pendingOffset;
+        private boolean isFooterWritten;
+
+        GeneratedDocumentReader(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int count = 0;
+            while (count < length) {
+                if (pendingOffset == pending.length()) {
+                    if (!nextChunk()) break;
+                }
+
+                int n = Math.min(length - count, pending.length() - pendingOffset);
+                pending.getChars(pendingOffset, pendingOffset + n, buffer, offset + count);
+                pendingOffset += n;
+                count += n;
+            }
+
+            written += count;
+            return count == 0 ? -1 : count;
+        }
+
+        private boolean nextChunk() {
+            if (isFooterWritten) return false;
+
+            if (written >= size) {
+                pending = FOOTER;
+                isFooterWritten = true;
+            } else {
+                pending = record(recordCount++);
+            }
+
+            pendingOffset = 0;
+            return true;
+        }
+
+        private static String record(long id) {
+            String tag = id % 100 == 0 ? "target" : "noise";
+            return "<" + tag + " id=\"" + id + "\"><name>record number " + id + "</name>"
+                    + "<description>some text that is only interesting for one record in a hundred</description>"
+                    + "<amount>" + (id * 7 % 1000) + "</amount></" + tag + ">\n";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
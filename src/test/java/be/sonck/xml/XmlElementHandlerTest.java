@@ -1,13 +1,21 @@
 package be.sonck.xml;
 
+import be.sonck.xml.value.LargeTextValue;
 import be.sonck.xml.value.StringValue;
 import junit.framework.TestCase;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -64,6 +72,162 @@ public class XmlElementHandlerTest extends TestCase {
 		xmlReader.parse(new InputSource(new StringReader(inputXml)));
 	}
 	
+	public void testInstrumentation() throws Exception {
+		String inputXml = "<root><camera><brand>Canon</brand></camera><lens>50mm</lens><camera/></root>";
+		
+		XmlHandlerListener<XmlElement> listener = new XmlHandlerListener<XmlElement>() {
+			@Override
+			public void start() {}
+			
+			@Override
+			public void end() {}
+			
+			@Override
+			public void newElement(XmlElement element) {}
+		};
+		
+		XmlHandlerCounters counters = new XmlHandlerCounters();
+		XmlElementHandler<XmlElement> handler = new XmlElementHandler<XmlElement>(Collections.singletonList("camera"),
+				listener, XmlElementToObjectConverter.identity());
+		handler.setInstrumentation(counters);
+		
+		XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+		xmlReader.setContentHandler(handler);
+		xmlReader.parse(new InputSource(new StringReader(inputXml)));
+		
+		assertEquals("events", 12, counters.getEvents());
+		assertEquals("text characters", 9, counters.getTextCharacters());
+		assertEquals("elements matched", 2, counters.getElementsMatched());
+		assertEquals("exported metrics", Long.valueOf(2), counters.toMap().get("xml.handler.elements.matched"));
+	}
+	
+	public void testTextSplitOverChunks() throws Exception {
+		XmlElement element = parseSingle("<root><text> Sara &amp; Johan &lt;3 </text></root>", null, 0);
+		
+		assertEquals("value", new StringValue("Sara & Johan <3"), element.getValue());
+	}
+	
+	public void testWhitespacePolicies() throws Exception {
+		String inputXml = "<root><text>\n  one   two\n</text></root>";
+		
+		assertEquals("trim", new StringValue("one   two"), parseSingle(inputXml, WhitespacePolicy.TRIM, 0).getValue());
+		assertEquals("preserve", new StringValue("\n  one   two\n"), parseSingle(inputXml, WhitespacePolicy.PRESERVE, 0).getValue());
+		assertEquals("collapse", new StringValue("one two"), parseSingle(inputXml, WhitespacePolicy.COLLAPSE, 0).getValue());
+	}
+	
+	public void testMaxTextLength() throws Exception {
+		try {
+			parseSingle("<root><text>0123456789</text></root>", null, 5);
+			fail("expected the text to be rejected");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("<text>"));
+		}
+	}
+	
+	public void testLargeTextThreshold() throws Exception {
+		StringBuilder text = new StringBuilder("\n  ");
+		for (int i = 0; i < 2000; i++) {
+			text.append("line ").append(i).append("  &amp; more\n");
+		}
+		
+		XmlElement small = parseSingle("<root><text> small </text></root>", null, 0, 1000);
+		assertEquals("small value", new StringValue("small"), small.getValue());
+		
+		for (WhitespacePolicy policy : WhitespacePolicy.values()) {
+			String inputXml = "<root><text>" + text + "</text></root>";
+			XmlElement expected = parseSingle(inputXml, policy, 0, 0);
+			XmlElement large = parseSingle(inputXml, policy, 0, 1000);
+			assertTrue("large value", large.getValue() instanceof LargeTextValue);
+			
+			LargeTextValue value = (LargeTextValue) large.getValue();
+			try {
+				assertTrue("spilled", value.isSpilled());
+				assertEquals(policy + " text", expected.getText(), large.getText());
+				assertEquals(policy + " xml", expected.toString(false), large.toString(false));
+			} finally {
+				value.close();
+			}
+		}
+		
+		assertEquals("whitespace only", null, parseSingle("<root><text>" + text.toString().replaceAll("\\S", " ")
+				+ "</text></root>", WhitespacePolicy.PRESERVE, 0, 1000).getValue());
+	}
+	
+	public void testLargeTextOfFailedParseIsClosed() throws Exception {
+		final List<XmlElement> elements = new ArrayList<XmlElement>();
+		XmlElementHandler<XmlElement> handler = new XmlElementHandler<XmlElement>(Collections.singletonList("text"),
+				collectingListener(elements), XmlElementToObjectConverter.identity());
+		handler.setLargeTextThreshold(10);
+		
+		char[] text = "0123456789012345678901234567890123456789".toCharArray();
+		int temporaryFiles = countTemporaryFiles();
+		handler.startDocument();
+		handler.startElement("", "root", "root", null);
+		handler.startElement("", "text", "text", null);
+		handler.characters(text, 0, text.length);
+		try {
+			handler.fatalError(new SAXParseException("broken", null));
+			fail("expected the error to be thrown");
+		} catch (SAXParseException e) {
+			// the parse is aborted
+		}
+		assertEquals("temporary files", temporaryFiles, countTemporaryFiles());
+		
+		handler.startDocument();
+		handler.startElement("", "text", "text", null);
+		handler.characters(text, 0, 4);
+		handler.endElement("", "text", "text");
+		handler.endDocument();
+		
+		assertEquals("element count", 1, elements.size());
+		assertEquals("text", "0123", elements.get(0).getText());
+	}
+	
+	private XmlElement parseSingle(String inputXml, WhitespacePolicy whitespacePolicy, int maxTextLength) throws Exception {
+		return parseSingle(inputXml, whitespacePolicy, maxTextLength, 0);
+	}
+	
+	private XmlElement parseSingle(String inputXml, WhitespacePolicy whitespacePolicy, int maxTextLength,
+			int largeTextThreshold) throws Exception {
+		List<XmlElement> elements = new ArrayList<XmlElement>();
+		XmlElementHandler<XmlElement> handler = new XmlElementHandler<XmlElement>(Collections.singletonList("text"),
+				collectingListener(elements), XmlElementToObjectConverter.identity());
+		if (whitespacePolicy != null) handler.setWhitespacePolicy(whitespacePolicy);
+		if (maxTextLength > 0) handler.setMaxTextLength(maxTextLength);
+		if (largeTextThreshold > 0) handler.setLargeTextThreshold(largeTextThreshold);
+		
+		XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+		xmlReader.setContentHandler(handler);
+		xmlReader.parse(new InputSource(new StringReader(inputXml)));
+		
+		assertEquals("element count", 1, elements.size());
+		return elements.get(0);
+	}
+	
+	private static XmlHandlerListener<XmlElement> collectingListener(final List<XmlElement> elements) {
+		return new XmlHandlerListener<XmlElement>() {
+			@Override
+			public void start() {}
+			
+			@Override
+			public void end() {}
+			
+			@Override
+			public void newElement(XmlElement element) {
+				elements.add(element);
+			}
+		};
+	}
+	
+	private static int countTemporaryFiles() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")),
+				"xml-value*.txt")) {
+			int count = 0;
+			for (Path file : files) count++;
+			return count;
+		}
+	}
+	
 	private void checkElement(XmlElement xmlElement) {
 		switch (++this.elementId) {
 			case 1:
@@ -0,0 +1,95 @@
+package be.sonck.xml;
+
+import be.sonck.xml.value.StringValue;
+import be.sonck.xml.value.XmlValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the retained heap of buffered {@link XmlElement} records with the layout XmlElement used to have
+ * (a HashMap and an ArrayList per element and a StringValue per text value).  Not run as part of the
+ * build; start it with the number of records as argument (default 100000).
+ */
+public class XmlElementMemoryBenchmark {
+
+    public static void main(String[] args) {
+        int recordCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        long before = usedMemory();
+        List<Object> legacy = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            legacy.add(legacyRecord(i));
+        }
+        long legacyBytes = usedMemory() - before;
+        // Reading the list after the measurement keeps the records reachable until they have been measured.
+        int legacyCount = legacy.size();
+        legacy = null;
+
+        before = usedMemory();
+        List<Object> compact = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            compact.add(record(i));
+        }
+        long compactBytes = usedMemory() - before;
+        int compactCount = compact.size();
+
+        System.out.printf("legacy:  %,d bytes (%d per record)%n", legacyBytes, legacyBytes / recordCount);
+        System.out.printf("compact: %,d bytes (%d per record)%n", compactBytes, compactBytes / recordCount);
+        System.out.printf("%d legacy and %d compact records measured%n", legacyCount, compactCount);
+    }
+
+    private static XmlElement record(int id) {
+        XmlElement record = new XmlElement("record");
+        record.setAttribute("id", String.valueOf(id));
+        new XmlElement(record, "name", "name " + id);
+        new XmlElement(record, "city", "city " + id);
+        new XmlElement(record, "amount", String.valueOf(id * 7));
+        new XmlElement(record, "flag");
+
+        return record;
+    }
+
+    private static LegacyXmlElement legacyRecord(int id) {
+        LegacyXmlElement record = new LegacyXmlElement("record", null);
+        record.attributes.put("id", String.valueOf(id));
+        record.add(new LegacyXmlElement("name", new StringValue("name " + id)));
+        record.add(new LegacyXmlElement("city", new StringValue("city " + id)));
+        record.add(new LegacyXmlElement("amount", new StringValue(String.valueOf(id * 7))));
+        record.add(new LegacyXmlElement("flag", null));
+
+        return record;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The field layout of XmlElement before it was made compact.
+     */
+    private static class LegacyXmlElement {
+        private final String tag;
+        private final XmlValue xmlValue;
+        private final Map<String, String> attributes = new HashMap<>();
+        private final List<LegacyXmlElement> children = new ArrayList<>();
+        private LegacyXmlElement parent;
+
+        private LegacyXmlElement(String tag, XmlValue xmlValue) {
+            this.tag = tag;
+            this.xmlValue = xmlValue;
+        }
+
+        private void add(LegacyXmlElement child) {
+            child.parent = this;
+            children.add(child);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlElementReaderTest {
+
+    private static final String XML = "<root>" +
+            "<person-list>" +
+            "<person id='1' person-id='10'>" +
+            "<name><first>Johan</first><last>Sonck</last></name>" +
+            "<birth>20-10-1972</birth>" +
+            "</person>" +
+            "<!-- skipped -->" +
+            "<person id='2' person-id='20'>" +
+            "<name><first>Sara</first><last>Burm &amp; co</last></name>" +
+            "<birth>05-11-1975</birth>" +
+            "</person>" +
+            "</person-list>" +
+            "<ignored>lots of text that is not needed</ignored>" +
+            "<camera-list>" +
+            "<camera><brand>Canon</brand><model>Ixus 55</model></camera>" +
+            "</camera-list>" +
+            "</root>";
+
+    private static final List<String> TOP_ELEMENTS = Arrays.asList("person", "camera");
+
+    @Test
+    public void buildsSameElementsAsSaxHandler() throws Exception {
+        List<String> expected = parseWithSax();
+
+        List<String> actual = new ArrayList<>();
+        try (XmlElementReader<XmlElement> reader = new XmlElementReader<>(new StringReader(XML), TOP_ELEMENTS,
+                XmlElementToObjectConverter.identity())) {
+
+            while (reader.hasNext()) {
+                actual.add(reader.next().toString());
+            }
+        }
+
+        assertThat(actual).hasSize(3).isEqualTo(expected);
+    }
+
+    @Test
+    public void notifiesListener() {
+        final List<String> events = new ArrayList<>();
+        XmlElementReader<String> reader = new XmlElementReader<>(new StringReader(XML), TOP_ELEMENTS,
+                element -> element.getTag());
+
+        reader.parse(new XmlHandlerListener<String>() {
+            @Override
+            public void start() {
+                events.add("start");
+            }
+
+            @Override
+            public void end() {
+                events.add("end");
+            }
+
+            @Override
+            public void newElement(String element) {
+                events.add(element);
+            }
+        });
+
+        assertThat(events).containsExactly("start", "person", "person", "camera", "end");
+    }
+
+    private static List<String> parseWithSax() throws Exception {
+        final List<String> elements = new ArrayList<>();
+        XmlHandlerListener<XmlElement> listener = new XmlHandlerListener<XmlElement>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(XmlElement element) {
+                elements.add(element.toString());
+            }
+        };
+
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+        xmlReader.setContentHandler(new XmlElementHandler<>(TOP_ELEMENTS, listener, XmlElementToObjectConverter.identity()));
+        xmlReader.parse(new InputSource(new StringReader(XML)));
+
+        return elements;
+    }
+}
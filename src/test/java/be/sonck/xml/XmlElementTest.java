@@ -1,10 +1,18 @@
 package be.sonck.xml;
 
+import be.sonck.xml.value.CharSequenceValue;
+import be.sonck.xml.value.CompositeXmlValue;
 import be.sonck.xml.value.StringValue;
+import be.sonck.xml.value.XmlValue;
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -171,4 +179,200 @@ public class XmlElementTest extends TestCase {
 		String string = xmlElement.toString(false);
 		assertThat(string).isEqualTo("<li class=\"test\">value</li>");
 	}
+
+	public void testWriteToAppendable() throws Exception {
+		XmlElement parent = new XmlElement("parent");
+		XmlElement child = new XmlElement(parent, "johan", "sonck");
+		child.setAttribute("straat", "Reetsesteenweg");
+		new XmlElement(new XmlElement(parent, "sara"), "empty");
+
+		StringBuilder builder = new StringBuilder();
+		parent.writeTo(builder, 2, true);
+
+		StringWriter stringWriter = new StringWriter();
+		PrintWriter printWriter = new PrintWriter(stringWriter);
+		printWriter.println("<parent>");
+		printWriter.println("  <johan straat=\"Reetsesteenweg\">sonck</johan>");
+		printWriter.println("  <sara>");
+		printWriter.println("    <empty/>");
+		printWriter.println("  </sara>");
+		printWriter.println("</parent>");
+
+		assertThat(builder.toString()).isEqualTo(stringWriter.toString());
+	}
+
+	public void testWriteToOutputStream() throws Exception {
+		XmlElement parent = new XmlElement("parent");
+		new XmlElement(parent, "johan", "s\u00f6nck");
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		parent.writeTo(outputStream, StandardCharsets.UTF_8, 0, false);
+
+		byte[] expected = "<parent><johan>s\u00f6nck</johan></parent>".getBytes(StandardCharsets.UTF_8);
+		assertThat(outputStream.toByteArray()).isEqualTo(expected);
+		assertThat(expected).contains((byte) 0xC3, (byte) 0xB6);
+	}
+
+	public void testPrettyPrintDeeplyNested() {
+		int depth = 100000;
+		XmlElement root = new XmlElement("a");
+		XmlElement element = root;
+		for (int i = 1; i < depth; i++) {
+			element = new XmlElement(element, "a");
+		}
+		element.setValue("bottom");
+		new XmlElement(root, "last");
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			expected.append("<a>");
+		}
+		expected.append("bottom");
+		for (int i = 1; i < depth; i++) {
+			expected.append("</a>");
+		}
+		expected.append("<last/></a>");
+
+		assertThat(root.toString(false)).isEqualTo(expected.toString());
+	}
+
+	public void testPrettyPrintIndentation() {
+		XmlElement parent = new XmlElement("parent");
+		new XmlElement(new XmlElement(new XmlElement(parent, "child"), "grandchild"), "leaf", "value");
+		new XmlElement(parent, "empty");
+
+		StringWriter stringWriter = new StringWriter();
+		PrintWriter printWriter = new PrintWriter(stringWriter);
+		printWriter.println("<parent>");
+		printWriter.println("   <child>");
+		printWriter.println("      <grandchild>");
+		printWriter.println("         <leaf>value</leaf>");
+		printWriter.println("      </grandchild>");
+		printWriter.println("   </child>");
+		printWriter.println("   <empty/>");
+		printWriter.println("</parent>");
+
+		assertEquals(stringWriter.toString(), parent.prettyPrint(3));
+	}
+
+	public void testPadLeft() {
+		assertEquals("    ab", XmlElement.padLeft("ab", " ", 6));
+		assertEquals("-=-=ab", XmlElement.padLeft("ab", "-=", 7));
+		assertEquals("abc", XmlElement.padLeft("abc", " ", 2));
+		assertEquals("  ", XmlElement.padLeft(null, " ", 2));
+	}
+
+	public void testEqualsIgnoresParent() {
+		XmlElement first = new XmlElement(new XmlElement("first"), "record", "value");
+		first.setAttribute("id", "1");
+		XmlElement second = new XmlElement(new XmlElement("second"), "record", "value");
+		second.setAttribute("id", "1");
+
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+		assertFalse(first.getParent().equals(second.getParent()));
+
+		Set<XmlElement> records = new HashSet<>();
+		assertTrue(records.add(first));
+		assertFalse(records.add(second));
+	}
+
+	public void testHashCodeFollowsMutations() {
+		XmlElement record = new XmlElement("record");
+		XmlElement name = new XmlElement(new XmlElement(record, "person"), "name", "johan");
+		XmlElement copy = new XmlElement("record");
+		XmlElement copyName = new XmlElement(new XmlElement(copy, "person"), "name", "johan");
+
+		int hashCode = record.hashCode();
+		assertEquals(hashCode, copy.hashCode());
+
+		name.setValue("sara");
+		assertFalse(hashCode == record.hashCode());
+		assertFalse(record.equals(copy));
+
+		copyName.setValue("sara");
+		assertEquals(record, copy);
+		assertEquals(record.hashCode(), copy.hashCode());
+
+		name.setAttribute("lang", "nl");
+		assertFalse(record.equals(copy));
+
+		new XmlElement(copyName, "nickname");
+		copyName.setAttribute("lang", "nl");
+		assertFalse(record.equals(copy));
+	}
+
+	public void testEqualsDeeplyNested() {
+		XmlElement first = new XmlElement("a");
+		XmlElement second = new XmlElement("a");
+		XmlElement firstLeaf = first;
+		XmlElement secondLeaf = second;
+		for (int i = 1; i < 100000; i++) {
+			firstLeaf = new XmlElement(firstLeaf, "a");
+			secondLeaf = new XmlElement(secondLeaf, "a");
+		}
+
+		assertEquals(first, second);
+
+		secondLeaf.setValue("bottom");
+		assertFalse(first.equals(second));
+	}
+
+	public void testChildLookup() {
+		XmlElement person = new XmlElement("person");
+		new XmlElement(person, "name", "johan");
+		new XmlElement(person, "child", "sara");
+		new XmlElement(person, "child", "emma");
+		new XmlElement(person, "address", new StringValue("a & b"));
+
+		assertEquals("johan", person.getChildText("name"));
+		assertEquals("a & b", person.getChildText("address"));
+		assertNull(person.getChildText("age"));
+		new XmlElement(person, "note", "x & y");
+		new XmlElement(person, "remark", new CharSequenceValue(new StringBuilder("x & y")));
+		new XmlElement(person, "markup", new CompositeXmlValue(Arrays.asList(new StringValue("x"), XmlValue.NON_BLANK_SPACE)));
+		assertEquals("x & y", person.getChildText("note"));
+		assertEquals("x & y", person.getChildText("remark"));
+		assertEquals("x&nbsp;", person.getChildText("markup"));
+		assertNull(person.getChild("age"));
+		assertEquals(2, person.getChildren("child").size());
+		assertEquals(new StringValue("emma"), person.getChildren("child").get(1).getValue());
+	}
+
+	public void testIndexedChildLookup() {
+		XmlElement record = new XmlElement("record");
+		for (int i = 0; i < 200; i++) {
+			new XmlElement(record, "field" + i, String.valueOf(i));
+		}
+
+		for (int i = 0; i < 200; i++) {
+			assertEquals(String.valueOf(i), record.getChildText("field" + i));
+		}
+
+		new XmlElement(record, "field7", "again");
+		assertEquals(2, record.getChildren("field7").size());
+		assertEquals("7", record.getChildText("field7"));
+		assertTrue(record.getChildren("missing").isEmpty());
+	}
+
+	public void testTypedAttribute() {
+		XmlElement record = new XmlElement("record");
+		record.setAttribute("id", "42");
+
+		assertEquals(Integer.valueOf(42), record.getAttribute("id", Integer::valueOf));
+		assertNull(record.getAttribute("missing", Integer::valueOf));
+	}
+
+	public void testValueWrapperIsKept() {
+		XmlElement text = new XmlElement("name", "johan");
+		XmlElement value = new XmlElement("name", new StringValue("johan"));
+
+		assertSame(text.getValue(), text.getValue());
+		assertEquals(text, value);
+		assertEquals(text.hashCode(), value.hashCode());
+
+		text.setValue("sara");
+		assertEquals(new StringValue("sara"), text.getValue());
+		assertFalse(text.equals(value));
+	}
 }
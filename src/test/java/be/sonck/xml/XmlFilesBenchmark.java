@@ -0,0 +1,104 @@
+package be.sonck.xml;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+/**
+ * Compares parsing a file through a BufferedReader over an InputStreamReader with parsing it through
+ * {@link XmlFiles}.  Not run as part of the build; start it with the file size in megabytes as argument
+ * (default 2048).  The file is generated in the temporary directory and deleted afterwards.
+ */
+public class XmlFilesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 2048;
+        Logger.getRootLogger().setLevel(Level.INFO);
+
+        Path file = Files.createTempFile("xml-files-benchmark", ".xml");
+        try {
+            generate(file, megabytes * 1024 * 1024);
+
+            for (int run = 1; run <= 3; run++) {
+                long start = System.nanoTime();
+                long matched = parseWithReader(file);
+                report("reader", run, megabytes, start, matched);
+
+                start = System.nanoTime();
+                matched = parseWithXmlFiles(file);
+                report("mapped", run, megabytes, start, matched);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static long parseWithReader(Path file) throws Exception {
+        CountingListener listener = new CountingListener();
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+        xmlReader.setContentHandler(handler(listener));
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file.toFile()),
+                StandardCharsets.UTF_8))) {
+            xmlReader.parse(new InputSource(reader));
+        }
+
+        return listener.matched;
+    }
+
+    private static long parseWithXmlFiles(Path file) {
+        CountingListener listener = new CountingListener();
+        XmlFiles.parse(file, handler(listener));
+
+        return listener.matched;
+    }
+
+    private static XmlElementHandler<XmlElement> handler(CountingListener listener) {
+        return new XmlElementHandler<>(Collections.singletonList("target"), listener,
+                XmlElementToObjectConverter.identity());
+    }
+
+    private static void report(String name, int run, long megabytes, long start, long matched) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s run %d: %d MB in %.2f s, %.1f MB/s, %d elements matched%n",
+                name, run, megabytes, seconds, megabytes / seconds, matched);
+    }
+
+    private static void generate(Path file, long size) throws Exception {
+        char[] buffer = new char[64 * 1024];
+        try (Reader reader = new XmlElementHandlerBenchmark.GeneratedDocumentReader(size);
+             Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            int count;
+            while ((count = reader.read(buffer, 0, buffer.length)) > 0) {
+                writer.write(buffer, 0, count);
+            }
+        }
+    }
+
+    private static class CountingListener implements XmlHandlerListener<XmlElement> {
+        private long matched;
+
+        @Override
+        public void start() {}
+
+        @Override
+        public void end() {}
+
+        @Override
+        public void newElement(XmlElement element) {
+            matched++;
+        }
+    }
+}
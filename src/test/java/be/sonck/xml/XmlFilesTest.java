@@ -0,0 +1,135 @@
+package be.sonck.xml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlFilesTest {
+
+    private static final XmlElementToObjectConverter<String> NAME_CONVERTER =
+            element -> element.getValue().toString();
+
+    private static final String AGE_XSD = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+            "<xs:element name='person'><xs:complexType><xs:sequence>" +
+            "<xs:element name='age' type='xs:int'/>" +
+            "</xs:sequence></xs:complexType></xs:element>" +
+            "</xs:schema>";
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("xml-files-test", ".xml");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void detectsEncoding() throws IOException {
+        write("<?xml version='1.0' encoding='ISO-8859-1'?><root/>", StandardCharsets.ISO_8859_1);
+        assertThat(XmlEncodingDetector.detect(file)).isEqualTo("ISO-8859-1");
+
+        write("<root/>", StandardCharsets.UTF_8);
+        assertThat(XmlEncodingDetector.detect(file)).isEqualTo("UTF-8");
+
+        write("\ufeff<root/>", StandardCharsets.UTF_16BE);
+        assertThat(XmlEncodingDetector.detect(file)).isEqualTo("UTF-16BE");
+    }
+
+    @Test
+    public void readsAcrossMappedRegions() throws IOException {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(file, content);
+
+        try (MappedFileInputStream inputStream = new MappedFileInputStream(file, 64)) {
+            byte[] buffer = new byte[content.length];
+            int offset = 0;
+            int count;
+            while ((count = inputStream.read(buffer, offset, Math.min(100, buffer.length - offset))) > 0) {
+                offset += count;
+            }
+
+            assertThat(offset).isEqualTo(content.length);
+            assertThat(buffer).isEqualTo(content);
+            assertThat(inputStream.position()).isEqualTo(content.length);
+            assertThat(inputStream.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void parsesDeclaredEncoding() throws IOException {
+        write("<?xml version='1.0' encoding='ISO-8859-1'?><root><name>René</name><name>Zoë</name></root>",
+                StandardCharsets.ISO_8859_1);
+
+        List<String> names = new ArrayList<>();
+        XmlFiles.parse(file, new XmlElementHandler<>(names(), listener(names), NAME_CONVERTER));
+        assertThat(names).containsExactly("René", "Zoë");
+
+        try (Stream<String> stream = XmlFiles.elements(file, names(), NAME_CONVERTER)) {
+            assertThat(stream.collect(Collectors.toList())).containsExactly("René", "Zoë");
+        }
+
+        try (XmlElementReader<String> reader = XmlFiles.reader(file, names(), NAME_CONVERTER)) {
+            assertThat(reader.next()).isEqualTo("René");
+            assertThat(reader.next()).isEqualTo("Zoë");
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void validatesFile() throws IOException {
+        write("<person><age>old</age></person>", StandardCharsets.UTF_8);
+        Path xsd = Files.createTempFile("xml-files-test", ".xsd");
+        try {
+            Files.write(xsd, AGE_XSD.getBytes(StandardCharsets.UTF_8));
+
+            ValidationReport report = new XmlValidator(new SchemaCache()).validate(file, xsd.toUri().toURL());
+            assertThat(report.isValid()).isFalse();
+            assertThat(report.getErrors().get(0).getLineNumber()).isEqualTo(1);
+        } finally {
+            Files.delete(xsd);
+        }
+    }
+
+    private void write(String content, Charset charset) throws IOException {
+        Files.write(file, content.getBytes(charset));
+    }
+
+    private static List<String> names() {
+        return Collections.singletonList("name");
+    }
+
+    private static XmlHandlerListener<String> listener(final List<String> names) {
+        return new XmlHandlerListener<String>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(String name) {
+                names.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlSelectorTest {
+
+    private static final String XML = "<feed xmlns:a='urn:a'>" +
+            "<entry><item id='1' type='book'><item id='1.1'/></item></entry>" +
+            "<entry><wrapper><item id='2'/></wrapper></entry>" +
+            "<entry><a:item id='3' type='cd'/></entry>" +
+            "<item id='4'/>" +
+            "</feed>";
+
+    @Test
+    public void plainNameMatchesAtAnyDepth() throws Exception {
+        assertThat(parse("item")).containsExactly("1", "2", "3", "4");
+    }
+
+    @Test
+    public void absolutePathMatchesExactAncestry() throws Exception {
+        assertThat(parse("/feed/entry/item")).containsExactly("1", "3");
+    }
+
+    @Test
+    public void descendantStepMatchesBelowAncestor() throws Exception {
+        assertThat(parse("/feed/entry//item")).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    public void wildcardMatchesAnyName() throws Exception {
+        assertThat(parse("/feed/*/*/item")).containsExactly("1.1", "2");
+    }
+
+    @Test
+    public void namespaceRestrictsMatches() throws Exception {
+        assertThat(parse("//{urn:a}item")).containsExactly("3");
+        assertThat(parse(XmlSelector.compile("/feed/entry/x:item", Collections.singletonMap("x", "urn:a"))))
+                .containsExactly("3");
+    }
+
+    @Test
+    public void attributePredicatesRestrictMatches() throws Exception {
+        assertThat(parse("item[@type]")).containsExactly("1", "3");
+        assertThat(parse("item[@type='cd']")).containsExactly("3");
+    }
+
+    @Test
+    public void staxReaderUsesSameSelectors() throws Exception {
+        List<XmlSelector> selectors = Collections.singletonList(XmlSelector.compile("/feed/entry/item"));
+        XmlElementReader<String> reader = XmlElementReader.forSelectors(
+                XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML)), selectors,
+                element -> element.getAttribute("id"));
+
+        List<String> ids = new ArrayList<>();
+        reader.forEachRemaining(ids::add);
+
+        assertThat(ids).containsExactly("1", "3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownPrefix() {
+        XmlSelector.compile("/feed/x:item");
+    }
+
+    private static List<String> parse(String expression) throws Exception {
+        return parse(XmlSelector.compile(expression));
+    }
+
+    private static List<String> parse(XmlSelector selector) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        XmlHandlerListener<String> listener = new XmlHandlerListener<String>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(String element) {
+                ids.add(element);
+            }
+        };
+
+        XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+        xmlReader.setContentHandler(XmlElementHandler.forSelectors(Collections.singletonList(selector), listener,
+                element -> element.getAttribute("id")));
+        xmlReader.parse(new InputSource(new StringReader(XML)));
+
+        return ids;
+    }
+}
@@ -0,0 +1,204 @@
+package be.sonck.xml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlSplitParserTest {
+
+    private static final XmlElementToObjectConverter<String> ID_CONVERTER = element -> element.getAttribute("id");
+
+    private ExecutorService executor;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        file = Files.createTempFile("xml-split-parser-test", ".xml");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void parsesFlatRecordsInDocumentOrder() throws IOException {
+        StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<root xmlns:x='urn:x'>\n");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("  <record id='").append(i).append("'><x:name>récord ").append(i).append("</x:name></record>\n");
+        }
+        xml.append("</root>\n");
+
+        List<String> ids = parse(xml.toString());
+
+        assertThat(ids).hasSize(1000);
+        assertThat(ids).isEqualTo(parseSequentially());
+    }
+
+    @Test
+    public void fallsBackWhenTheStructureIsNotFlat() throws IOException {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < 300; i++) {
+            xml.append("<record id='").append(i).append("'/>");
+            if (i % 50 == 10) xml.append("<!-- <record id='comment'/> -->");
+            if (i % 50 == 20) xml.append("<text><![CDATA[ <record id='cdata'/> ]]></text>");
+            if (i % 50 == 30) xml.append("<group><record id='nested-").append(i).append("'/></group>");
+            if (i == 150) xml.append("<!--").append(String.join("", Collections.nCopies(20, "<record id='x'/>"))).append("-->");
+        }
+        xml.append("</root>");
+
+        assertThat(parse(xml.toString())).isEqualTo(parseSequentially()).contains("nested-30");
+    }
+
+    @Test
+    public void parsesDocumentTypeSequentially() throws IOException {
+        List<String> ids = parse("<!DOCTYPE root [<!ENTITY id '42'>]><root><record id='&id;'/><record id='43'/></root>");
+
+        assertThat(ids).containsExactly("42", "43");
+    }
+
+    @Test
+    public void resumesFromLastCheckpoint() throws IOException {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < 300; i++) {
+            xml.append("<record id='").append(i).append("'/>");
+            if (i == 250) xml.append("<!--").append(String.join("", Collections.nCopies(20, "<record id='x'/>"))).append("-->");
+        }
+        xml.append("</root>");
+        Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+
+        for (int failAt : new int[] { 0, 1, 99, 100, 254, 299 }) {
+            assertThat(parseWithFailure(failAt)).describedAs("failing at " + failAt).isEqualTo(parseSequentially());
+        }
+    }
+
+    @Test
+    public void resumeOnlyParsesTheTail() throws IOException {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < 300; i++) {
+            xml.append("<record id='").append(i).append("'/>");
+            if (i == 100) xml.append("<!--").append(String.join("", Collections.nCopies(20, "<record id='x'/>"))).append("-->");
+        }
+        xml.append("</root>");
+        Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+
+        final XmlCheckpoint[] lastCheckpoint = { XmlCheckpoint.START };
+        XmlSplitParser<String> failing = new XmlSplitParser<>("record", ID_CONVERTER, executor, 4);
+        failing.setChunkSize(100);
+        failing.setCheckpointListener(checkpoint -> lastCheckpoint[0] = checkpoint);
+        try {
+            failing.parse(file, collectingListener(new ArrayList<String>() {
+                @Override
+                public boolean add(String id) {
+                    if (id.equals("250")) throw new IllegalStateException("downstream outage");
+                    return super.add(id);
+                }
+            }));
+        } catch (IllegalStateException e) {
+            // resumed below
+        }
+
+        AtomicInteger conversions = new AtomicInteger();
+        List<String> ids = new ArrayList<>();
+        XmlSplitParser<String> resuming = new XmlSplitParser<>("record", element -> {
+            conversions.incrementAndGet();
+            return ID_CONVERTER.convert(element);
+        }, executor, 4);
+        resuming.setChunkSize(100);
+        resuming.resume(file, lastCheckpoint[0], collectingListener(ids));
+
+        assertThat(ids).hasSize(50);
+        assertThat(ids.get(0)).isEqualTo("250");
+        assertThat(conversions.get()).isEqualTo(50);
+        assertThat(resuming.getBytesParsed()).isLessThan(Files.size(file) / 4);
+    }
+
+    @Test
+    public void resumesSequentialParse() throws IOException {
+        Files.write(file, "<!DOCTYPE root><root><record id='1'/><record id='2'/><record id='3'/></root>"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThat(parseWithFailure(1)).containsExactly("1", "2", "3");
+
+        XmlSplitParser<String> resuming = new XmlSplitParser<>("record", ID_CONVERTER, executor, 4);
+        resuming.resume(file, new XmlCheckpoint(0, 2, 2), collectingListener(new ArrayList<>()));
+        assertThat(resuming.getBytesParsed()).isEqualTo(Files.size(file));
+    }
+
+    /**
+     * Parses the file with a listener that fails on the element with the given index, then resumes.
+     */
+    private List<String> parseWithFailure(final int failAt) {
+        final List<String> ids = new ArrayList<>();
+        final XmlCheckpoint[] lastCheckpoint = { XmlCheckpoint.START };
+
+        XmlSplitParser<String> parser = new XmlSplitParser<>("record", ID_CONVERTER, executor, 4);
+        parser.setChunkSize(100);
+        parser.setCheckpointListener(checkpoint -> lastCheckpoint[0] = checkpoint);
+
+        try {
+            parser.parse(file, collectingListener(new ArrayList<String>() {
+                @Override
+                public boolean add(String id) {
+                    if (ids.size() == failAt) throw new IllegalStateException("downstream outage");
+                    return ids.add(id);
+                }
+            }));
+        } catch (IllegalStateException e) {
+            assertThat(lastCheckpoint[0].getElementCount()).isEqualTo(failAt);
+        }
+
+        parser.resume(file, lastCheckpoint[0], collectingListener(ids));
+
+        return ids;
+    }
+
+    private List<String> parse(String xml) throws IOException {
+        Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+
+        List<String> ids = new ArrayList<>();
+        XmlSplitParser<String> parser = new XmlSplitParser<>("record", ID_CONVERTER, executor, 4);
+        parser.setChunkSize(100);
+        parser.parse(file, collectingListener(ids));
+
+        return ids;
+    }
+
+    private List<String> parseSequentially() {
+        List<String> ids = new ArrayList<>();
+        XmlFiles.parse(file, new XmlElementHandler<>(Collections.singletonList("record"),
+                collectingListener(ids), ID_CONVERTER));
+
+        return ids;
+    }
+
+    private static <T> XmlHandlerListener<T> collectingListener(final List<T> elements) {
+        return new XmlHandlerListener<T>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(T element) {
+                elements.add(element);
+            }
+        };
+    }
+}
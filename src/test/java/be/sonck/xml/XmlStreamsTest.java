@@ -0,0 +1,126 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class XmlStreamsTest {
+
+    private static final XmlElementToObjectConverter<Integer> ID_CONVERTER =
+            element -> Integer.valueOf(element.getAttribute("id"));
+
+    @Test
+    public void streamsConvertedElementsInOrder() {
+        try (Stream<Integer> stream = XmlStreams.elements(document(100), records(), ID_CONVERTER, 7)) {
+            List<Integer> ids = stream.collect(Collectors.toList());
+
+            assertThat(ids).hasSize(100);
+            assertThat(ids.get(0)).isEqualTo(0);
+            assertThat(ids.get(99)).isEqualTo(99);
+        }
+    }
+
+    @Test
+    public void parallelStreamKeepsDocumentOrder() {
+        try (Stream<Integer> stream = XmlStreams.elements(document(1000), records(), ID_CONVERTER, 10)) {
+            List<Integer> ids = stream.parallel().map(id -> id + 1).collect(Collectors.toList());
+
+            assertThat(ids).hasSize(1000);
+            for (int i = 0; i < 1000; i++) {
+                assertThat(ids.get(i)).isEqualTo(i + 1);
+            }
+        }
+    }
+
+    @Test
+    public void parallelStreamConvertsOffTheParserThread() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        XmlElementToObjectConverter<Integer> converter = element -> {
+            threads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ID_CONVERTER.convert(element);
+        };
+
+        try (Stream<Integer> stream = XmlStreams.elements(document(500), records(), converter, 5)) {
+            assertThat(stream.parallel().collect(Collectors.toList())).hasSize(500);
+        }
+
+        assertThat(threads).doesNotContain("xml-stream-parser");
+        assertThat(threads.size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void closingStopsTheParser() {
+        Stream<Integer> stream = XmlStreams.elements(document(100000), records(), ID_CONVERTER, 1);
+        Iterator<Integer> iterator = stream.iterator();
+
+        assertThat(iterator.next()).isEqualTo(0);
+        stream.close();
+
+        assertThat(iterator.hasNext()).isFalse();
+    }
+
+    @Test
+    public void rethrowsParseErrors() {
+        InputSource broken = new InputSource(new StringReader("<root><record id='1'/><record"));
+
+        try (Stream<Integer> stream = XmlStreams.elements(broken, records(), ID_CONVERTER)) {
+            stream.count();
+            fail("expected a parse error");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause()).isInstanceOf(SAXParseException.class);
+        }
+    }
+
+    @Test
+    public void rethrowsErrorsOfTheParserThread() {
+        InputSource failing = new InputSource(new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                throw new AssertionError("broken reader");
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        try (Stream<Integer> stream = XmlStreams.elements(failing, records(), ID_CONVERTER)) {
+            stream.count();
+            fail("expected the error of the parser thread");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause()).isInstanceOf(AssertionError.class);
+        }
+    }
+
+    private static List<String> records() {
+        return Collections.singletonList("record");
+    }
+
+    private static InputSource document(int recordCount) {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < recordCount; i++) {
+            xml.append("<record id='").append(i).append("'/>");
+        }
+        xml.append("</root>");
+
+        return new InputSource(new StringReader(xml.toString()));
+    }
+}
@@ -0,0 +1,61 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlSymbolTableTest {
+
+    @Test
+    public void returnsCanonicalInstance() {
+        XmlSymbolTable symbolTable = new XmlSymbolTable();
+        String first = symbolTable.canonicalize(new String("record"));
+
+        assertThat(symbolTable.canonicalize(new String("record"))).isSameAs(first);
+        assertThat(symbolTable.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void stopsGrowingAtMaxSize() {
+        XmlSymbolTable symbolTable = new XmlSymbolTable(1);
+        symbolTable.canonicalize("a");
+        String b = new String("b");
+
+        assertThat(symbolTable.canonicalize(b)).isSameAs(b);
+        assertThat(symbolTable.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void sharesNamesBetweenParses() {
+        XmlSymbolTable symbolTable = new XmlSymbolTable();
+
+        XmlElement first = parse("<root><record id='1'><name>a</name></record></root>", symbolTable);
+        XmlElement second = parse("<root><record id='2'><name>b</name></record></root>", symbolTable);
+
+        assertThat(second.getTag()).isSameAs(first.getTag());
+        assertThat(second.getChildren().get(0).getTag()).isSameAs(first.getChildren().get(0).getTag());
+        assertThat(second.getAttributes().keySet().iterator().next())
+                .isSameAs(first.getAttributes().keySet().iterator().next());
+    }
+
+    @Test
+    public void parsesWithoutSymbolTable() {
+        XmlElement element = parse("<root><record id='1'><name>a</name></record></root>", null);
+
+        assertThat(element.getTag()).isEqualTo("record");
+        assertThat(element.getAttributes()).containsEntry("id", "1");
+        assertThat(element.getChildren().get(0).getTag()).isEqualTo("name");
+        assertThat(XmlSymbolTable.NONE.size()).isEqualTo(0);
+    }
+
+    private static XmlElement parse(String xml, XmlSymbolTable symbolTable) {
+        XmlElementReader<XmlElement> reader = new XmlElementReader<>(new StringReader(xml),
+                Collections.singletonList("record"), XmlElementToObjectConverter.identity());
+        reader.setSymbolTable(symbolTable);
+
+        return reader.next();
+    }
+}
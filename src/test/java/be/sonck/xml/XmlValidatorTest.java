@@ -0,0 +1,179 @@
+package be.sonck.xml;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.validation.Validator;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class XmlValidatorTest {
+
+    private static final String XSD = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+            "<xs:element name='person'><xs:complexType><xs:sequence>" +
+            "<xs:element name='name' type='xs:string'/>" +
+            "<xs:element name='age' type='xs:int'/>" +
+            "</xs:sequence></xs:complexType></xs:element>" +
+            "</xs:schema>";
+
+    private static final String VALID_XML = "<person><name>Johan</name><age>44</age></person>";
+    private static final String INVALID_XML = "<person><name>Johan</name><age>old</age></person>";
+
+    @Test
+    public void compilesSchemaOnce() {
+        SchemaCache schemaCache = new SchemaCache();
+        XmlValidator validator = new XmlValidator(schemaCache);
+
+        validator.validateXml(new StringReader(VALID_XML), new StringReader(XSD));
+        validator.validateXml(new StringReader(VALID_XML), new StringReader(XSD));
+
+        assertThat(schemaCache.size()).isEqualTo(1);
+        assertThat(schemaCache.get(XSD)).isSameAs(schemaCache.get(new StringReader(XSD)));
+    }
+
+    @Test
+    public void reportsInvalidDocument() {
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+
+        try {
+            validator.validateXml(new StringReader(INVALID_XML), "person", new StringReader(XSD));
+            fail("expected a validation error");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause()).isInstanceOf(SAXParseException.class);
+        }
+
+        // the pooled validator is reset and can be used again
+        validator.validateXml(new StringReader(VALID_XML), "person", new StringReader(XSD));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSchema() {
+        SchemaCache schemaCache = new SchemaCache(1);
+        SchemaCache.Entry first = schemaCache.get("first", new StringReader(XSD));
+        schemaCache.get("second", new StringReader(XSD));
+
+        assertThat(schemaCache.size()).isEqualTo(1);
+        assertThat(schemaCache.get("first", new StringReader(XSD))).isNotSameAs(first);
+    }
+
+    @Test
+    public void dropsValidatorsBeyondThePoolSize() {
+        SchemaCache.Entry entry = new SchemaCache(1, 1).get(XSD);
+        Validator first = entry.acquire();
+        Validator second = entry.acquire();
+        entry.release(first);
+        entry.release(second);
+
+        assertThat(entry.acquire()).isSameAs(first);
+        assertThat(entry.acquire()).isNotSameAs(second);
+    }
+
+    @Test
+    public void validatesWhileParsing() {
+        final List<String> names = new ArrayList<>();
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+
+        validator.validateAndParse(new InputSource(new StringReader(VALID_XML)), new StringReader(XSD),
+                new XmlElementHandler<>(Collections.singletonList("name"), collectingListener(names),
+                        element -> element.getValue().toString()));
+
+        assertThat(names).containsExactly("Johan");
+    }
+
+    @Test
+    public void reportsPositionOfValidationErrorWhileParsing() {
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+        String xml = "<person>\n<name>Johan</name>\n<age>old</age>\n</person>";
+
+        try {
+            validator.validateAndParse(new InputSource(new StringReader(xml)), new StringReader(XSD),
+                    new XmlElementHandler<>(Collections.singletonList("name"), collectingListener(new ArrayList<>()),
+                            element -> element.getValue().toString()));
+            fail("expected a validation error");
+        } catch (RuntimeException e) {
+            SAXParseException cause = (SAXParseException) e.getCause();
+            assertThat(cause.getLineNumber()).isEqualTo(3);
+            assertThat(cause.getColumnNumber()).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    public void collectsAllErrors() {
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+        String xml = "<person>\n<name><x/></name>\n<age>old</age>\n</person>";
+
+        ValidationReport report = validator.validate(new StringReader(xml), new StringReader(XSD));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.isAborted()).isFalse();
+        assertThat(report.getErrors()).extracting("lineNumber").contains(2, 3);
+    }
+
+    @Test
+    public void stopsAtMaxErrors() {
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+        validator.setMaxErrors(1);
+        String xml = "<person>\n<name><x/></name>\n<age>old</age>\n</person>";
+
+        ValidationReport report = validator.validate(new StringReader(xml), new StringReader(XSD));
+
+        assertThat(report.getErrors()).hasSize(1);
+        assertThat(report.getErrors().get(0).getLineNumber()).isEqualTo(2);
+        assertThat(report.isAborted()).isTrue();
+    }
+
+    @Test
+    public void abortsAtMalformedDocument() {
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+        String xml = "<person>\n<name>Johan</name>\n<age>44</age>\n</persn>";
+
+        ValidationReport report = validator.validate(new StringReader(xml), new StringReader(XSD));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.isAborted()).isTrue();
+        assertThat(report.getErrors()).extracting("fatal").contains(true);
+    }
+
+    @Test
+    public void failFastThrowsFirstError() {
+        XmlValidator validator = new XmlValidator(new SchemaCache());
+        validator.setFailFast(true);
+        String xml = "<person>\n<name><x/></name>\n<age>old</age>\n</person>";
+
+        try {
+            validator.validateXml(new StringReader(xml), new StringReader(XSD));
+            fail("expected a validation error");
+        } catch (RuntimeException e) {
+            assertThat(((SAXParseException) e.getCause()).getLineNumber()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void reportsValidDocument() {
+        ValidationReport report = new XmlValidator(new SchemaCache())
+                .validate(new StringReader(VALID_XML), new StringReader(XSD));
+
+        assertThat(report.isValid()).isTrue();
+    }
+
+    private static <T> XmlHandlerListener<T> collectingListener(final List<T> elements) {
+        return new XmlHandlerListener<T>() {
+            @Override
+            public void start() {}
+
+            @Override
+            public void end() {}
+
+            @Override
+            public void newElement(T element) {
+                elements.add(element);
+            }
+        };
+    }
+}
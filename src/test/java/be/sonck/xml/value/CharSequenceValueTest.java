@@ -0,0 +1,60 @@
+package be.sonck.xml.value;
+
+import be.sonck.xml.XmlElement;
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CharSequenceValueTest {
+
+    @Test
+    public void slicesShareTheBuffer() {
+        char[] buffer = "first & second".toCharArray();
+        CharSequenceValue first = CharSequenceValue.slice(buffer, 0, 7);
+        CharSequenceValue second = CharSequenceValue.slice(buffer, 8, 6);
+
+        assertThat(first.toString()).isEqualTo("first &amp;");
+        assertThat(second.toString()).isEqualTo("second");
+        assertThat(second.getValue().toString()).isEqualTo("second");
+    }
+
+    @Test
+    public void equalsComparesTheCharacters() {
+        CharSequenceValue slice = CharSequenceValue.slice("a second b".toCharArray(), 2, 6);
+
+        assertThat(slice).isEqualTo(new CharSequenceValue(new StringBuilder("second")));
+        assertThat(slice).isEqualTo(new CharSequenceValue("second"));
+        assertThat(slice.hashCode()).isEqualTo("second".hashCode());
+        assertThat(slice.hashCode()).isEqualTo(new CharSequenceValue(new StringBuilder("second")).hashCode());
+
+        assertThat(slice).isNotEqualTo(new CharSequenceValue("secone"));
+        assertThat(slice).isNotEqualTo(new CharSequenceValue("secon"));
+        assertThat(slice).isNotEqualTo(new CharSequenceValue("seconds"));
+        assertThat(slice).isNotEqualTo(new StringValue("second"));
+        assertThat(slice).isNotEqualTo(null);
+    }
+
+    @Test
+    public void emptySequencesAreEqual() {
+        CharSequenceValue empty = CharSequenceValue.slice("abc".toCharArray(), 1, 0);
+
+        assertThat(empty).isEqualTo(new CharSequenceValue(""));
+        assertThat(empty).isEqualTo(new CharSequenceValue(new StringBuilder()));
+        assertThat(empty.hashCode()).isEqualTo("".hashCode());
+        assertThat(empty).isNotEqualTo(new CharSequenceValue("a"));
+        assertThat(empty.toString()).isEmpty();
+    }
+
+    @Test
+    public void sliceIsWrittenThroughAnElement() {
+        char[] buffer = "xx<a & b>yy".toCharArray();
+        CharBuffer slice = CharBuffer.wrap(buffer, 2, 7).slice();
+
+        XmlElement element = new XmlElement("p", new CharSequenceValue(slice));
+
+        assertThat(element.toString(false)).isEqualTo("<p>&lt;a &amp; b&gt;</p>");
+        assertThat(element.getText()).isEqualTo("<a & b>");
+    }
+}
@@ -0,0 +1,36 @@
+package be.sonck.xml.value;
+
+import be.sonck.xml.XmlElement;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompositeXmlValueTest {
+
+    @Test
+    public void rendersPartsInOrder() throws Exception {
+        CompositeXmlValue nested = new CompositeXmlValue(Arrays.asList(new StringValue("b & c"), XmlValue.NON_BLANK_SPACE));
+        CompositeXmlValue value = new CompositeXmlValue(Arrays.asList(new StringValue("a <"), nested));
+
+        assertThat(value.toString()).isEqualTo("a &lt;b &amp; c&nbsp;");
+        assertThat(value.lengthHint()).isEqualTo(3 + 5 + 16);
+
+        StringBuilder builder = new StringBuilder("<p>");
+        value.writeTo(builder);
+        assertThat(builder.toString()).isEqualTo("<p>a &lt;b &amp; c&nbsp;");
+        assertThat(new XmlElement("p", value).toString(false)).isEqualTo("<p>a &lt;b &amp; c&nbsp;</p>");
+    }
+
+    @Test
+    public void memoizesRenderedForm() {
+        CompositeXmlValue value = new CompositeXmlValue(Arrays.asList(new StringValue("x"), new StringValue("y")), true);
+        CompositeXmlValue plain = new CompositeXmlValue(Arrays.asList(new StringValue("x"), new StringValue("y")));
+
+        assertThat(value.toString()).isSameAs(value.toString());
+        assertThat(plain.toString()).isNotSameAs(plain.toString());
+        assertThat(value).isEqualTo(plain);
+        assertThat(value.hashCode()).isEqualTo(plain.hashCode());
+    }
+}
@@ -0,0 +1,43 @@
+package be.sonck.xml.value;
+
+import be.sonck.xml.XmlElement;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LargeTextValueTest {
+
+    @Test
+    public void keepsSmallTextInMemory() throws IOException {
+        try (LargeTextValue value = new LargeTextValue(100)) {
+            value.append("a < b").append(' ').append("and more", 0, 3);
+
+            assertThat(value.isSpilled()).isFalse();
+            assertThat(value.length()).isEqualTo(9);
+            assertThat(value.toString()).isEqualTo("a &lt; b and");
+        }
+    }
+
+    @Test
+    public void streamsSpilledText() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        try (LargeTextValue value = new LargeTextValue(1000)) {
+            for (int i = 0; i < 5000; i++) {
+                value.append("<line ").append(String.valueOf(i)).append("/>");
+                expected.append("&lt;line ").append(i).append("/&gt;");
+            }
+
+            assertThat(value.isSpilled()).isTrue();
+
+            XmlElement element = new XmlElement("payload", value);
+            StringWriter writer = new StringWriter();
+            element.writeTo(writer, 0, false);
+
+            assertThat(writer.toString()).isEqualTo("<payload>" + expected + "</payload>");
+        }
+    }
+
+}
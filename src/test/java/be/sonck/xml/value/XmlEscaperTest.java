@@ -0,0 +1,31 @@
+package be.sonck.xml.value;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlEscaperTest {
+
+    @Test
+    public void returnsSameInstanceWhenNothingToEscape() {
+        String value = "nothing to see here";
+        assertThat(XmlEscaper.DEFAULT.escape(value)).isSameAs(value);
+    }
+
+    @Test
+    public void escapesText() {
+        assertThat(XmlEscaper.TEXT.escape("a & \"b\" < 'c' >")).isEqualTo("a &amp; \"b\" &lt; 'c' &gt;");
+    }
+
+    @Test
+    public void escapesAttribute() {
+        assertThat(XmlEscaper.ATTRIBUTE.escape("a\t\"b\"\n'c'")).isEqualTo("a&#9;&quot;b&quot;&#10;&#39;c&#39;");
+    }
+
+    @Test
+    public void escapesIntoAppendable() throws Exception {
+        StringBuilder builder = new StringBuilder("prefix ");
+        XmlEscaper.DEFAULT.escape("x<y>z", builder);
+        assertThat(builder.toString()).isEqualTo("prefix x&lt;y&gt;z");
+    }
+}